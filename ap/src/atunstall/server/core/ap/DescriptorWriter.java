@@ -0,0 +1,54 @@
+package atunstall.server.core.ap;
+
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.lang.model.element.Element;
+import javax.tools.FileObject;
+import javax.tools.StandardLocation;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+
+/**
+ * Writes the binary component descriptors read by the core at runtime instead of loading every component class.
+ * A descriptor starts with {@link #MAGIC}, {@link #FORMAT_VERSION} and the number of entries, followed by the entries themselves.
+ * Each entry starts with its kind, either {@link #VERSION} or {@link #MODULE}, and its binary name.
+ * A versioned interface entry then stores its major version, minor version and whether it is unique.
+ * A module entry then stores the binary names of the versioned interfaces it implements and its constructor's dependencies.
+ * Each dependency is stored as the binary name of the injected interface, the required major and minor versions and whether it is injected through a supplier.
+ */
+class DescriptorWriter {
+    private static final int MAGIC = 0x4D534344;
+    private static final int FORMAT_VERSION = 1;
+    static final int VERSION = 0;
+    static final int MODULE = 1;
+
+    private final ProcessingEnvironment processingEnv;
+    private final String name;
+
+    DescriptorWriter(ProcessingEnvironment processingEnv, String name) {
+        this.processingEnv = processingEnv;
+        this.name = name;
+    }
+
+    void write(List<Entry> entries, Element... originatingElements) {
+        try {
+            FileObject file = processingEnv.getFiler().createResource(StandardLocation.CLASS_OUTPUT, "", name, originatingElements);
+            try (OutputStream stream = file.openOutputStream(); DataOutputStream out = new DataOutputStream(stream)) {
+                out.writeInt(MAGIC);
+                out.writeByte(FORMAT_VERSION);
+                out.writeInt(entries.size());
+                for (Entry entry : entries) {
+                    entry.write(out);
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("Error whilst trying to create " + name);
+            e.printStackTrace();
+        }
+    }
+
+    interface Entry {
+        void write(DataOutputStream out) throws IOException;
+    }
+}
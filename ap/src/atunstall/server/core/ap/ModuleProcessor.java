@@ -12,13 +12,22 @@ import javax.lang.model.element.ElementKind;
 import javax.lang.model.element.ExecutableElement;
 import javax.lang.model.element.Modifier;
 import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
 import javax.lang.model.type.TypeMirror;
 import javax.tools.Diagnostic;
 import javax.tools.FileObject;
+import javax.tools.JavaFileObject;
 import javax.tools.StandardLocation;
 import java.io.IOException;
 import java.io.Writer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Optional;
 import java.util.Set;
 import java.util.stream.Collectors;
@@ -28,8 +37,14 @@ import java.util.stream.Collectors;
 public class ModuleProcessor extends AbstractProcessor {
     @SuppressWarnings("WeakerAccess")
     static final String ANNOTATION = "atunstall.server.core.api.Module";
+    private static final String FACTORY = "atunstall.server.core.api.ModuleFactory";
+    private static final String FACTORY_SUFFIX = "_Factory";
+    private static final String SUPPLIER = "java.util.function.Supplier";
+    private static final String MAJOR_NAME = "major";
+    private static final String MINOR_NAME = "minor";
 
     private final Set<TypeElement> modules = new HashSet<>();
+    private final List<DescriptorWriter.Entry> descriptors = new ArrayList<>();
 
     @Override
     public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
@@ -43,14 +58,20 @@ public class ModuleProcessor extends AbstractProcessor {
             Set<Element> constructors = ((TypeElement) element).getEnclosedElements().stream().filter(e -> ElementKind.CONSTRUCTOR.equals(e.getKind())).filter(e -> e.getModifiers().contains(Modifier.PUBLIC)).collect(Collectors.toSet());
             if (constructors.size() == 1) {
                 ExecutableElement constructor = (ExecutableElement) constructors.iterator().next();
-                constructor.getParameters().stream().filter(e -> !getAnnotation(e, processingEnv.getElementUtils().getTypeElement(VersionProcessor.ANNOTATION).asType()).isPresent())
-                        .forEach(e -> processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, "Parameter must be annotated with " + VersionProcessor.ANNOTATION, e));
+                List<? extends VariableElement> invalid = constructor.getParameters().stream().filter(e -> !getAnnotation(e, processingEnv.getElementUtils().getTypeElement(VersionProcessor.ANNOTATION).asType()).isPresent()).collect(Collectors.toList());
+                invalid.forEach(e -> processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, "Parameter must be annotated with " + VersionProcessor.ANNOTATION, e));
+                if (invalid.isEmpty() && ElementKind.CLASS.equals(element.getKind())) {
+                    List<Dependency> dependencies = constructor.getParameters().stream().map(this::toDependency).collect(Collectors.toList());
+                    saveFactory((TypeElement) element, dependencies);
+                    descriptors.add(toDescriptor((TypeElement) element, dependencies));
+                }
             } else {
                 processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, "Element must have only one public constructor", element, mirror);
             }
         }));
         if (roundEnv.processingOver()) {
             saveServices();
+            new DescriptorWriter(processingEnv, "modules.bin").write(descriptors, modules.toArray(new TypeElement[0]));
         }
         return true;
     }
@@ -70,7 +91,125 @@ public class ModuleProcessor extends AbstractProcessor {
         }
     }
 
+    private Dependency toDependency(VariableElement parameter) {
+        TypeMirror type = parameter.asType();
+        boolean supplier = TypeKind.DECLARED.equals(type.getKind()) && SUPPLIER.contentEquals(((TypeElement) processingEnv.getTypeUtils().asElement(type)).getQualifiedName());
+        TypeMirror dependency = processingEnv.getTypeUtils().erasure(supplier ? ((DeclaredType) type).getTypeArguments().get(0) : type);
+        Dependency result = new Dependency(type, dependency, (TypeElement) processingEnv.getTypeUtils().asElement(dependency), supplier);
+        getAnnotation(parameter, processingEnv.getElementUtils().getTypeElement(VersionProcessor.ANNOTATION).asType()).map(processingEnv.getElementUtils()::getElementValuesWithDefaults).orElseThrow(IllegalStateException::new).forEach((k, v) -> {
+            if (MAJOR_NAME.contentEquals(k.getSimpleName())) {
+                result.major = (Integer) v.getValue();
+            } else if (MINOR_NAME.contentEquals(k.getSimpleName())) {
+                result.minor = (Integer) v.getValue();
+            }
+        });
+        return result;
+    }
+
+    private void saveFactory(TypeElement module, List<Dependency> dependencies) {
+        String packageName = processingEnv.getElementUtils().getPackageOf(module).getQualifiedName().toString();
+        String binaryName = processingEnv.getElementUtils().getBinaryName(module).toString();
+        String simpleName = binaryName.substring(packageName.isEmpty() ? 0 : packageName.length() + 1) + FACTORY_SUFFIX;
+        String moduleType = processingEnv.getTypeUtils().erasure(module.asType()).toString();
+        List<String> types = new ArrayList<>();
+        List<String> suppliers = new ArrayList<>();
+        List<String> majors = new ArrayList<>();
+        List<String> minors = new ArrayList<>();
+        List<String> arguments = new ArrayList<>();
+        for (int index = 0; index < dependencies.size(); index++) {
+            Dependency dependency = dependencies.get(index);
+            types.add(dependency.erasure.toString() + ".class");
+            suppliers.add(String.valueOf(dependency.supplier));
+            majors.add(String.valueOf(dependency.major));
+            minors.add(String.valueOf(dependency.minor));
+            arguments.add("(" + dependency.parameter.toString() + ") arguments[" + index + "]");
+        }
+        try {
+            JavaFileObject file = processingEnv.getFiler().createSourceFile(packageName.isEmpty() ? simpleName : packageName + "." + simpleName, module);
+            try (Writer writer = file.openWriter()) {
+                if (!packageName.isEmpty()) {
+                    writer.append("package ").append(packageName).append(";\n\n");
+                }
+                writer.append("// Generated by ").append(getClass().getName()).append(", do not edit\n");
+                writer.append("public final class ").append(simpleName).append(" implements ").append(FACTORY).append('<').append(moduleType).append("> {\n");
+                writer.append("    private static final Class<?>[] TYPES = {").append(String.join(", ", types)).append("};\n");
+                writer.append("    private static final boolean[] SUPPLIERS = {").append(String.join(", ", suppliers)).append("};\n");
+                writer.append("    private static final int[] MAJORS = {").append(String.join(", ", majors)).append("};\n");
+                writer.append("    private static final int[] MINORS = {").append(String.join(", ", minors)).append("};\n\n");
+                writer.append("    @Override\n    public Class<").append(moduleType).append("> getModule() {\n        return ").append(moduleType).append(".class;\n    }\n\n");
+                writer.append("    @Override\n    public int getDependencyCount() {\n        return ").append(String.valueOf(dependencies.size())).append(";\n    }\n\n");
+                writer.append("    @Override\n    public Class<?> getDependencyType(int index) {\n        return TYPES[index];\n    }\n\n");
+                writer.append("    @Override\n    public boolean isSupplier(int index) {\n        return SUPPLIERS[index];\n    }\n\n");
+                writer.append("    @Override\n    public int getMajorVersion(int index) {\n        return MAJORS[index];\n    }\n\n");
+                writer.append("    @Override\n    public int getMinorVersion(int index) {\n        return MINORS[index];\n    }\n\n");
+                writer.append("    @Override\n    @SuppressWarnings(\"unchecked\")\n    public ").append(moduleType).append(" create(Object[] arguments) throws Exception {\n");
+                writer.append("        return new ").append(moduleType).append('(').append(String.join(", ", arguments)).append(");\n    }\n}\n");
+            }
+        } catch (IOException e) {
+            System.err.println("Error whilst trying to create the factory of " + binaryName);
+            e.printStackTrace();
+        }
+    }
+
+    private DescriptorWriter.Entry toDescriptor(TypeElement module, List<Dependency> dependencies) {
+        String name = processingEnv.getElementUtils().getBinaryName(module).toString();
+        List<String> implemented = getImplemented(module);
+        List<String> types = dependencies.stream().map(d -> processingEnv.getElementUtils().getBinaryName(d.type).toString()).collect(Collectors.toList());
+        return out -> {
+            out.writeByte(DescriptorWriter.MODULE);
+            out.writeUTF(name);
+            out.writeShort(implemented.size());
+            for (String type : implemented) {
+                out.writeUTF(type);
+            }
+            out.writeShort(dependencies.size());
+            for (int index = 0; index < dependencies.size(); index++) {
+                Dependency dependency = dependencies.get(index);
+                out.writeUTF(types.get(index));
+                out.writeInt(dependency.major);
+                out.writeInt(dependency.minor);
+                out.writeBoolean(dependency.supplier);
+            }
+        };
+    }
+
+    private List<String> getImplemented(TypeElement module) {
+        TypeMirror version = processingEnv.getElementUtils().getTypeElement(VersionProcessor.ANNOTATION).asType();
+        Set<String> implemented = new LinkedHashSet<>();
+        Deque<TypeMirror> processing = new ArrayDeque<>();
+        processing.add(module.asType());
+        while (processing.size() > 0) {
+            TypeMirror current = processing.pop();
+            if (!TypeKind.DECLARED.equals(current.getKind())) {
+                continue;
+            }
+            TypeElement element = (TypeElement) processingEnv.getTypeUtils().asElement(current);
+            if (getAnnotation(element, version).isPresent()) {
+                implemented.add(processingEnv.getElementUtils().getBinaryName(element).toString());
+            }
+            processing.add(element.getSuperclass());
+            processing.addAll(element.getInterfaces());
+        }
+        return new ArrayList<>(implemented);
+    }
+
     private Optional<? extends AnnotationMirror> getAnnotation(AnnotatedConstruct annotated, TypeMirror annotation) {
         return annotated.getAnnotationMirrors().stream().filter(m -> processingEnv.getTypeUtils().isSameType(m.getAnnotationType(), annotation)).findAny();
     }
+
+    private static class Dependency {
+        private final TypeMirror parameter;
+        private final TypeMirror erasure;
+        private final TypeElement type;
+        private final boolean supplier;
+        private int major;
+        private int minor;
+
+        private Dependency(TypeMirror parameter, TypeMirror erasure, TypeElement type, boolean supplier) {
+            this.parameter = parameter;
+            this.erasure = erasure;
+            this.type = type;
+            this.supplier = supplier;
+        }
+    }
 }
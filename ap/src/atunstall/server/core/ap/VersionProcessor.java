@@ -19,7 +19,9 @@ import javax.tools.FileObject;
 import javax.tools.StandardLocation;
 import java.io.IOException;
 import java.io.Writer;
+import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
@@ -77,6 +79,7 @@ public class VersionProcessor extends AbstractProcessor {
         }));
         if (roundEnv.processingOver()) {
             saveServices();
+            saveDescriptors();
         }
         return true;
     }
@@ -96,6 +99,32 @@ public class VersionProcessor extends AbstractProcessor {
         }
     }
 
+    private void saveDescriptors() {
+        TypeMirror version = processingEnv.getElementUtils().getTypeElement(ANNOTATION).asType();
+        TypeMirror unique = processingEnv.getElementUtils().getTypeElement(UniqueProcessor.ANNOTATION).asType();
+        List<DescriptorWriter.Entry> entries = new ArrayList<>();
+        for (TypeElement element : services) {
+            String name = processingEnv.getElementUtils().getBinaryName(element).toString();
+            int[] numbers = new int[2];
+            getAnnotation(element, version).map(processingEnv.getElementUtils()::getElementValuesWithDefaults).orElseThrow(IllegalStateException::new).forEach((k, v) -> {
+                if (MAJOR_NAME.contentEquals(k.getSimpleName())) {
+                    numbers[0] = (Integer) v.getValue();
+                } else if (MINOR_NAME.contentEquals(k.getSimpleName())) {
+                    numbers[1] = (Integer) v.getValue();
+                }
+            });
+            boolean isUnique = getAnnotation(element, unique).isPresent();
+            entries.add(out -> {
+                out.writeByte(DescriptorWriter.VERSION);
+                out.writeUTF(name);
+                out.writeInt(numbers[0]);
+                out.writeInt(numbers[1]);
+                out.writeBoolean(isUnique);
+            });
+        }
+        new DescriptorWriter(processingEnv, "services.bin").write(entries, services.toArray(new TypeElement[0]));
+    }
+
     private Optional<? extends AnnotationMirror> getAnnotation(AnnotatedConstruct annotated, TypeMirror annotation) {
         return annotated.getAnnotationMirrors().stream().filter(m -> processingEnv.getTypeUtils().isSameType(m.getAnnotationType(), annotation)).findAny();
     }
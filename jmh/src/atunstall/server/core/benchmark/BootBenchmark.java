@@ -0,0 +1,164 @@
+package atunstall.server.core.benchmark;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the cold start of the core against generated components, in a fresh JVM for every run.
+ * The first run of every size starts without a component index and the following runs reuse the index written by the previous run.
+ * Time to ready is measured from the start of the JVM until the startup report is written, which happens once every module is instantiated.
+ * Peak RSS is read from {@code /proc} while the JVM runs, so it is only available on Linux.
+ */
+public class BootBenchmark {
+    private static final String MAIN = "atunstall.server.core/atunstall.server.core.impl.Start";
+    private static final String STARTUP_REPORT = "startup-report.json";
+    private static final String COMPONENT_INDEX = "components.index";
+    private static final String PEAK_RSS = "VmHWM:";
+    private static final long POLL_INTERVAL = TimeUnit.MILLISECONDS.toNanos(2L);
+
+    private final Map<String, String> options;
+
+    private BootBenchmark(Map<String, String> options) {
+        this.options = options;
+    }
+
+    /**
+     * Runs the benchmark.
+     * Options are given as {@code --name value} pairs: {@code --core} and {@code --processors} are the paths of the core's classes and of the annotation processors, {@code --sizes} is a comma-separated list of component counts,
+     * {@code --fan-out}, {@code --depth} and {@code --unique} describe the generated graphs, {@code --runs} is the number of runs per size, {@code --timeout} is the maximum duration of a run in minutes, {@code --jvm-args} are space-separated options of the booted JVMs, {@code --work} is the directory the components are generated in, and {@code --output} is the JSON file the results are written to.
+     * @param args The options.
+     * @throws Exception If the components could not be generated or the core could not be run.
+     */
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new HashMap<>();
+        options.put("--sizes", "10,100,1000,5000");
+        options.put("--fan-out", "3");
+        options.put("--depth", "5");
+        options.put("--unique", "1");
+        options.put("--runs", "3");
+        options.put("--work", "build/boot");
+        options.put("--output", "build/boot/results.json");
+        options.put("--timeout", "30");
+        options.put("--jvm-args", "");
+        for (int index = 0; index + 1 < args.length; index += 2) {
+            options.put(args[index], args[index + 1]);
+        }
+        if (!options.containsKey("--core") || !options.containsKey("--processors")) {
+            System.err.println("Usage: BootBenchmark --core <path> --processors <path> [--sizes 10,100,1000,5000] [--fan-out 3] [--depth 5] [--unique 1] [--runs 3] [--timeout 30] [--jvm-args \"-Xmx2g\"] [--work build/boot] [--output build/boot/results.json]");
+            System.exit(1);
+        }
+        new BootBenchmark(options).run();
+    }
+
+    private void run() throws IOException, InterruptedException {
+        List<String> results = new ArrayList<>();
+        int fanOut = Integer.parseInt(options.get("--fan-out"));
+        int depth = Integer.parseInt(options.get("--depth"));
+        double uniqueRatio = Double.parseDouble(options.get("--unique"));
+        int runs = Integer.parseInt(options.get("--runs"));
+        for (String size : options.get("--sizes").split(",")) {
+            int count = Integer.parseInt(size.trim());
+            Path directory = Paths.get(options.get("--work"), "components-" + count).toAbsolutePath();
+            long start = System.nanoTime();
+            new ComponentGenerator(count, fanOut, Math.min(depth, count), uniqueRatio, options.get("--core"), options.get("--processors")).generate(directory);
+            System.out.printf("Generated %d components in %.1f s%n", count, (System.nanoTime() - start) / 1E9D);
+            Files.deleteIfExists(directory.resolve(COMPONENT_INDEX));
+            for (int run = 0; run < runs; run++) {
+                try {
+                    String result = boot(directory, count, run);
+                    System.out.println(result);
+                    results.add(result);
+                } catch (IOException e) {
+                    // Later runs of this size would fail the same way, the other sizes still run
+                    System.out.println(e.getMessage());
+                    results.add(String.format("{\"components\": %d, \"run\": %d, \"error\": \"%s\"}", count, run, e.getMessage().replace("\\", "\\\\").replace("\"", "\\\"")));
+                    break;
+                }
+            }
+        }
+        Path output = Paths.get(options.get("--output"));
+        Files.createDirectories(output.toAbsolutePath().getParent());
+        try (Writer writer = Files.newBufferedWriter(output, StandardCharsets.UTF_8)) {
+            writer.append("[\n  ").append(String.join(",\n  ", results)).append("\n]\n");
+        }
+        System.out.println("Results written to " + output);
+    }
+
+    private String boot(Path directory, int count, int run) throws IOException, InterruptedException {
+        Path report = directory.resolve(STARTUP_REPORT);
+        Files.deleteIfExists(report);
+        boolean indexed = Files.exists(directory.resolve(COMPONENT_INDEX));
+        String java = Paths.get(System.getProperty("java.home"), "bin", "java").toString();
+        List<String> command = new ArrayList<>();
+        command.add(java);
+        for (String option : options.get("--jvm-args").split(" ")) {
+            if (!option.isEmpty()) {
+                command.add(option);
+            }
+        }
+        command.addAll(List.of("-p", options.get("--core"), "-m", MAIN));
+        ProcessBuilder builder = new ProcessBuilder(command).directory(directory.toFile()).redirectErrorStream(true).redirectOutput(directory.resolve("boot-" + run + ".log").toFile());
+        long timeout = TimeUnit.MINUTES.toNanos(Long.parseLong(options.get("--timeout")));
+        long start = System.nanoTime();
+        Process process = builder.start();
+        long ready = -1L;
+        long peakRss = -1L;
+        Path status = Paths.get("/proc", String.valueOf(process.pid()), "status");
+        while (process.isAlive()) {
+            if (System.nanoTime() - start > timeout) {
+                process.destroyForcibly();
+                throw new IOException("boot with " + count + " components timed out");
+            }
+            if (ready < 0L && Files.exists(report)) {
+                ready = System.nanoTime() - start;
+            }
+            peakRss = Math.max(peakRss, readPeakRss(status));
+            TimeUnit.NANOSECONDS.sleep(POLL_INTERVAL);
+        }
+        long exit = System.nanoTime() - start;
+        if (process.exitValue() != 0 || !Files.exists(report)) {
+            throw new IOException("boot with " + count + " components failed with exit code " + process.exitValue() + ", see " + directory.resolve("boot-" + run + ".log"));
+        }
+        return String.format("{\"components\": %d, \"run\": %d, \"indexed\": %b, \"timeToReady\": %.3f, \"timeToExit\": %.3f, \"peakRss\": %d, \"phases\": %s}",
+                count, run, indexed, (ready < 0L ? exit : ready) / 1E6D, exit / 1E6D, peakRss, readPhases(report));
+    }
+
+    /**
+     * Reads the peak resident set size of a process.
+     * @param status The status file of the process.
+     * @return The peak RSS in kilobytes, or -1 if it couldn't be read.
+     */
+    private static long readPeakRss(Path status) {
+        try {
+            for (String line : Files.readAllLines(status, StandardCharsets.UTF_8)) {
+                if (line.startsWith(PEAK_RSS)) {
+                    return Long.parseLong(line.substring(PEAK_RSS.length()).replace("kB", "").trim());
+                }
+            }
+        } catch (IOException | RuntimeException ignored) {
+            // The process exited or doesn't run on Linux
+        }
+        return -1L;
+    }
+
+    /**
+     * Extracts the phase durations from a startup report.
+     * @param report The startup report.
+     * @return The JSON object of the phases.
+     * @throws IOException If an I/O error occurs while reading the report.
+     */
+    private static String readPhases(Path report) throws IOException {
+        String content = new String(Files.readAllBytes(report), StandardCharsets.UTF_8);
+        int start = content.indexOf('{', content.indexOf("\"phases\""));
+        return content.substring(start, content.indexOf('}', start) + 1).replaceAll("\\s+", " ");
+    }
+}
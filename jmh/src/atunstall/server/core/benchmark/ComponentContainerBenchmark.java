@@ -0,0 +1,55 @@
+package atunstall.server.core.benchmark;
+
+import atunstall.server.core.impl.container.ComponentContainer;
+import atunstall.server.core.impl.logging.RootLogger;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of looking up the component of an annotated class and of reading component descriptors.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class ComponentContainerBenchmark {
+    @Param({"10", "100", "1000"})
+    public int size;
+
+    private byte[] descriptor;
+    private ClassLoader loader;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        SyntheticGraph graph = SyntheticGraph.of(SyntheticGraph.Shape.TREE, size, 0.5D);
+        descriptor = graph.describe();
+        loader = new SyntheticGraph.SyntheticClassLoader(graph);
+    }
+
+    @Benchmark
+    public Optional<ComponentContainer> toComponent() {
+        return ComponentContainer.toComponent(RootLogger.class.getName(), RootLogger.class.getClassLoader());
+    }
+
+    @Benchmark
+    public List<ComponentContainer> toComponents() throws IOException {
+        return ComponentContainer.toComponents(descriptor, loader);
+    }
+}
@@ -0,0 +1,261 @@
+package atunstall.server.core.benchmark;
+
+import javax.annotation.processing.Processor;
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.ServiceLoader;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Generates a components directory of synthetic component JARs.
+ * Every JAR contains a versioned service interface and a module implementing it, compiled with the annotation processors so that it contains the same descriptors as a real component.
+ * Components are spread over levels, and every component depends on {@code fanOut} components of the next level, so the deepest dependency chain has {@code depth} components.
+ */
+public class ComponentGenerator {
+    private static final String PACKAGE_PREFIX = "synthetic.c";
+    private static final String COMPONENTS = "components";
+    private static final String MARKER = "generated.txt";
+
+    private final int count;
+    private final int fanOut;
+    private final int depth;
+    private final double uniqueRatio;
+    private final String corePath;
+    private final ClassLoader processorLoader;
+
+    /**
+     * Creates a new generator.
+     * @param count The number of components.
+     * @param fanOut The number of dependencies of every component outside the last level.
+     * @param depth The number of levels.
+     * @param uniqueRatio The ratio of unique services, spread evenly over the components.
+     * @param corePath The path of the core's classes.
+     * @param processorPath The path of the annotation processors.
+     */
+    public ComponentGenerator(int count, int fanOut, int depth, double uniqueRatio, String corePath, String processorPath) {
+        if (count < depth || depth < 1 || fanOut < 0) {
+            throw new IllegalArgumentException("cannot generate " + count + " components in " + depth + " levels");
+        }
+        this.count = count;
+        this.fanOut = fanOut;
+        this.depth = depth;
+        this.uniqueRatio = uniqueRatio;
+        this.corePath = corePath;
+        // Loading the processors once instead of once per compilation halves the compilation time
+        List<URL> processorUrls = new ArrayList<>();
+        for (String entry : processorPath.split(File.pathSeparator)) {
+            try {
+                processorUrls.add(Paths.get(entry).toUri().toURL());
+            } catch (IOException e) {
+                throw new IllegalArgumentException("invalid processor path " + entry, e);
+            }
+        }
+        processorLoader = new URLClassLoader(processorUrls.toArray(new URL[0]), ComponentGenerator.class.getClassLoader());
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 7) {
+            System.err.println("Usage: ComponentGenerator <directory> <count> <fan-out> <depth> <unique ratio> <core path> <processor path>");
+            System.exit(1);
+        }
+        new ComponentGenerator(Integer.parseInt(args[1]), Integer.parseInt(args[2]), Integer.parseInt(args[3]), Double.parseDouble(args[4]), args[5], args[6]).generate(Paths.get(args[0]));
+    }
+
+    /**
+     * Generates the components directory in the given directory, unless it was already generated with the same parameters.
+     * @param directory The directory to create the components directory in.
+     * @throws IOException If an I/O error occurs while generating the components.
+     */
+    public void generate(Path directory) throws IOException {
+        Path components = directory.resolve(COMPONENTS);
+        Path marker = directory.resolve(MARKER);
+        String description = String.format("count=%d fanOut=%d depth=%d uniqueRatio=%s%n", count, fanOut, depth, uniqueRatio);
+        if (Files.exists(marker) && description.equals(new String(Files.readAllBytes(marker), StandardCharsets.UTF_8))) {
+            return;
+        }
+        Path sources = directory.resolve("sources");
+        Path classes = directory.resolve("classes");
+        Files.deleteIfExists(marker);
+        delete(components);
+        delete(sources);
+        delete(classes);
+        Files.createDirectories(components);
+        Files.createDirectories(classes);
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        ExecutorService executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+        try {
+            // Dependencies are in the next level, so levels are compiled from the deepest one
+            for (int level = depth - 1; level >= 0; level--) {
+                List<Future<Path>> outputs = new ArrayList<>();
+                for (int component = level; component < count; component += depth) {
+                    int index = component;
+                    outputs.add(executor.submit(() -> compile(compiler, index, sources, classes)));
+                }
+                for (Future<Path> output : outputs) {
+                    copy(output.get(), classes);
+                }
+            }
+            for (int component = 0; component < count; component++) {
+                jar(sources.resolve(getName(component)).resolve("out"), components.resolve(getName(component) + ".jar"));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("interrupted while generating components", e);
+        } catch (ExecutionException e) {
+            throw new IOException("could not generate components", e.getCause());
+        } finally {
+            executor.shutdown();
+        }
+        delete(sources);
+        delete(classes);
+        Files.write(marker, description.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private Path compile(JavaCompiler compiler, int component, Path sources, Path classes) throws IOException {
+        Path root = sources.resolve(getName(component));
+        Path source = root.resolve(PACKAGE_PREFIX.replace('.', File.separatorChar) + String.format("%05d", component));
+        Path output = root.resolve("out");
+        Files.createDirectories(source);
+        Files.createDirectories(output);
+        Files.write(source.resolve("Service.java"), getService(component).getBytes(StandardCharsets.UTF_8));
+        Files.write(source.resolve("ServiceImpl.java"), getModule(component).getBytes(StandardCharsets.UTF_8));
+        DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+        try (StandardJavaFileManager files = compiler.getStandardFileManager(diagnostics, null, StandardCharsets.UTF_8)) {
+            List<String> options = List.of("-cp", corePath + File.pathSeparator + classes, "-d", output.toString());
+            Iterable<? extends JavaFileObject> units = files.getJavaFileObjects(source.resolve("Service.java").toFile(), source.resolve("ServiceImpl.java").toFile());
+            JavaCompiler.CompilationTask task = compiler.getTask(null, files, diagnostics, options, null, units);
+            List<Processor> processors = new ArrayList<>();
+            ServiceLoader.load(Processor.class, processorLoader).forEach(processors::add);
+            if (processors.isEmpty()) {
+                throw new IOException("no annotation processor found in the processor path");
+            }
+            task.setProcessors(processors);
+            if (!task.call()) {
+                throw new IOException("could not compile " + getName(component) + ": " + diagnostics.getDiagnostics().stream().filter(d -> d.getKind() == Diagnostic.Kind.ERROR).map(d -> d.getMessage(null)).collect(Collectors.joining("; ")));
+            }
+        }
+        return output;
+    }
+
+    private String getService(int component) {
+        boolean unique = Math.floor((component + 1) * uniqueRatio) > Math.floor(component * uniqueRatio);
+        return "package " + getPackage(component) + ";\n\n"
+                + "import atunstall.server.core.api.Unique;\n"
+                + "import atunstall.server.core.api.Version;\n\n"
+                + (unique ? "@Unique\n" : "")
+                + "@Version(major = 1, minor = 0)\n"
+                + "public interface Service {\n"
+                + "    int getWeight();\n"
+                + "}\n";
+    }
+
+    private String getModule(int component) {
+        StringBuilder parameters = new StringBuilder();
+        StringBuilder weight = new StringBuilder("1");
+        List<Integer> dependencies = getDependencies(component);
+        for (int index = 0; index < dependencies.size(); index++) {
+            parameters.append(index == 0 ? "" : ", ").append("@Version(major = 1, minor = 0) ").append(getPackage(dependencies.get(index))).append(".Service dependency").append(index);
+            weight.append(" + dependency").append(index).append(".getWeight()");
+        }
+        return "package " + getPackage(component) + ";\n\n"
+                + "import atunstall.server.core.api.Module;\n"
+                + "import atunstall.server.core.api.Version;\n\n"
+                + "@Module\n"
+                + "public class ServiceImpl implements Service {\n"
+                + "    private final int weight;\n\n"
+                + "    public ServiceImpl(" + parameters + ") {\n"
+                + "        weight = " + weight + ";\n"
+                + "    }\n\n"
+                + "    @Override\n"
+                + "    public int getWeight() {\n"
+                + "        return weight;\n"
+                + "    }\n"
+                + "}\n";
+    }
+
+    /**
+     * Returns the components the given component depends on, which are distinct components of the next level.
+     * @param component The index of the component.
+     * @return The indices of the dependencies.
+     */
+    private List<Integer> getDependencies(int component) {
+        int level = component % depth;
+        List<Integer> result = new ArrayList<>();
+        if (level == depth - 1) {
+            return result;
+        }
+        int levelSize = (count - level - 2) / depth + 1;
+        int position = component / depth;
+        for (int offset = 0; offset < Math.min(fanOut, levelSize); offset++) {
+            result.add((position + offset) % levelSize * depth + level + 1);
+        }
+        return result;
+    }
+
+    private static String getName(int component) {
+        return String.format("c%05d", component);
+    }
+
+    private static String getPackage(int component) {
+        return PACKAGE_PREFIX + String.format("%05d", component);
+    }
+
+    private static void copy(Path from, Path to) throws IOException {
+        try (Stream<Path> files = Files.walk(from)) {
+            for (Path file : (Iterable<Path>) files.filter(Files::isRegularFile)::iterator) {
+                Path target = to.resolve(from.relativize(file).toString());
+                Files.createDirectories(target.getParent());
+                Files.copy(file, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+    }
+
+    private static void jar(Path from, Path jar) throws IOException {
+        try (JarOutputStream out = new JarOutputStream(Files.newOutputStream(jar)); Stream<Path> files = Files.walk(from)) {
+            for (Path file : (Iterable<Path>) files.filter(Files::isRegularFile).sorted()::iterator) {
+                out.putNextEntry(new JarEntry(from.relativize(file).toString().replace(File.separatorChar, '/')));
+                Files.copy(file, out);
+                out.closeEntry();
+            }
+        }
+    }
+
+    private static void delete(Path directory) throws IOException {
+        if (!Files.exists(directory)) {
+            return;
+        }
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(file -> {
+                try {
+                    Files.delete(file);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package atunstall.server.core.benchmark;
+
+import atunstall.server.core.impl.container.ComponentContainer;
+import atunstall.server.core.impl.dependency.DependencyTree;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of reading the descriptor of a synthetic graph and building its dependency tree, including cycle resolution.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class DependencyTreeBenchmark extends GraphState {
+    @Benchmark
+    public DependencyTree buildTree() throws IOException {
+        return new DependencyTree(logger, ComponentContainer.toComponents(descriptor, loader).stream());
+    }
+}
@@ -0,0 +1,41 @@
+package atunstall.server.core.benchmark;
+
+import atunstall.server.core.impl.logging.RootLogger;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Synthetic graph shared by the dependency tree benchmarks, described by its size, its shape and its ratio of unique services.
+ */
+@State(Scope.Benchmark)
+public abstract class GraphState {
+    @Param({"10", "100", "1000", "10000"})
+    public int size;
+
+    @Param({"CHAIN", "TREE", "STAR", "DIAMOND"})
+    public SyntheticGraph.Shape shape;
+
+    @Param({"0", "0.5", "1"})
+    public double uniqueRatio;
+
+    protected RootLogger logger;
+    protected byte[] descriptor;
+    protected ClassLoader loader;
+
+    @Setup(Level.Trial)
+    public void setUpGraph() {
+        logger = new RootLogger();
+        SyntheticGraph graph = SyntheticGraph.of(shape, size, uniqueRatio);
+        descriptor = graph.describe();
+        loader = new SyntheticGraph.SyntheticClassLoader(graph);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDownGraph() {
+        logger.terminate();
+    }
+}
@@ -0,0 +1,40 @@
+package atunstall.server.core.benchmark;
+
+import atunstall.server.core.impl.container.ComponentContainer;
+import atunstall.server.core.impl.dependency.DependencyTree;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of instantiating every module of a synthetic graph.
+ * A tree only instantiates its modules once, so a new tree is built before every invocation.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class InstantiationBenchmark extends GraphState {
+    private DependencyTree tree;
+
+    @Setup(Level.Invocation)
+    public void buildTree() throws IOException {
+        tree = new DependencyTree(logger, ComponentContainer.toComponents(descriptor, loader).stream());
+    }
+
+    @Benchmark
+    public DependencyTree instantiateModules() {
+        tree.instantiateModules();
+        return tree;
+    }
+}
@@ -0,0 +1,89 @@
+package atunstall.server.core.benchmark;
+
+import atunstall.server.core.api.logging.Level;
+import atunstall.server.core.api.logging.Logger;
+import atunstall.server.core.impl.logging.RootLogger;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.BenchmarkParams;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Throughput of the logging pipeline with one or more producer threads.
+ * Messages are passed to a listener that only counts them, so the logging thread's dispatch is measured but not formatting or output.
+ * Running with {@code -prof gc} reports the allocation per message, and the logging system properties may be passed with {@code -jvmArgsAppend}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class LoggingBenchmark {
+    private RootLogger root;
+    private Logger logger;
+    private LongAdder delivered;
+
+    @Setup(org.openjdk.jmh.annotations.Level.Trial)
+    public void setUp() {
+        root = new RootLogger();
+        delivered = new LongAdder();
+        root.addListener(message -> delivered.increment(), level -> !Level.DEBUG.equals(level));
+        logger = root.getChild("Benchmark");
+    }
+
+    /**
+     * Stops the logging thread once every queued message was delivered, and fails the run if the listener didn't receive the expected messages.
+     * @param params The parameters of the benchmark that ran.
+     */
+    @TearDown(org.openjdk.jmh.annotations.Level.Trial)
+    public void tearDown(BenchmarkParams params) {
+        root.terminate();
+        boolean filtered = params.getBenchmark().endsWith(".disabled");
+        if (filtered ? delivered.sum() > 0L : delivered.sum() == 0L) {
+            throw new IllegalStateException(delivered.sum() + " messages delivered to the listener by " + params.getBenchmark());
+        }
+    }
+
+    @Benchmark
+    @Threads(1)
+    public void message() {
+        logger.log(Level.INFO, "Benchmark message");
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void messageFourProducers() {
+        logger.log(Level.INFO, "Benchmark message");
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public void messageMaxProducers() {
+        logger.log(Level.INFO, "Benchmark message");
+    }
+
+    @Benchmark
+    @Threads(1)
+    public void pattern() {
+        logger.log(Level.INFO, "Benchmark message %d of %s", 1, "pattern");
+    }
+
+    @Benchmark
+    @Threads(1)
+    public void disabled() {
+        logger.log(Level.DEBUG, "Disabled message %d of %s", 1, "pattern");
+    }
+}
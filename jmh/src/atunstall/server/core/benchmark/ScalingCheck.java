@@ -0,0 +1,113 @@
+package atunstall.server.core.benchmark;
+
+import atunstall.server.core.impl.container.ComponentContainer;
+import atunstall.server.core.impl.dependency.DependencyTree;
+import atunstall.server.core.impl.logging.RootLogger;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Checks that building and instantiating dependency trees scales near-linearly with the number of components.
+ * Every shape of {@link SyntheticGraph} is measured at a small and a large size, and the check fails if the time per component of the large graphs exceeds the small graphs' by more than the given factor.
+ * Each measurement is the fastest of several runs, after warm-up runs that also define the classes of the synthetic modules.
+ * Garbage collections dominate the time of the large graphs unless the heap is large and fixed, so the scalingCheck task runs it with a 2 GB heap.
+ */
+public class ScalingCheck {
+    private static final double[] UNIQUE_RATIOS = {0D, 0.5D, 1D};
+
+    private final Map<String, String> options;
+
+    private ScalingCheck(Map<String, String> options) {
+        this.options = options;
+    }
+
+    /**
+     * Runs the check and exits with status 1 if it fails.
+     * Options are given as {@code --name value} pairs: {@code --small} and {@code --large} are the compared sizes, {@code --factor} is the maximum growth of the time per component,
+     * {@code --warmup} and {@code --runs} are the numbers of warm-up and measured runs.
+     * @param args The options.
+     * @throws IOException If the descriptor of a graph could not be read.
+     */
+    public static void main(String[] args) throws IOException {
+        Map<String, String> options = new HashMap<>();
+        options.put("--small", "1000");
+        options.put("--large", "10000");
+        options.put("--factor", "3");
+        options.put("--warmup", "2");
+        options.put("--runs", "5");
+        for (int index = 0; index + 1 < args.length; index += 2) {
+            options.put(args[index], args[index + 1]);
+        }
+        if (!new ScalingCheck(options).run()) {
+            System.exit(1);
+        }
+    }
+
+    private boolean run() throws IOException {
+        int small = Integer.parseInt(options.get("--small"));
+        int large = Integer.parseInt(options.get("--large"));
+        double factor = Double.parseDouble(options.get("--factor"));
+        List<String> failures = new ArrayList<>();
+        RootLogger logger = new RootLogger();
+        try {
+            for (SyntheticGraph.Shape shape : SyntheticGraph.Shape.values()) {
+                for (double uniqueRatio : UNIQUE_RATIOS) {
+                    long[] smallTimes = measure(logger, SyntheticGraph.of(shape, small, uniqueRatio));
+                    long[] largeTimes = measure(logger, SyntheticGraph.of(shape, large, uniqueRatio));
+                    String[] phases = {"build", "instantiation"};
+                    for (int phase = 0; phase < phases.length; phase++) {
+                        double smallTime = (double) smallTimes[phase] / small;
+                        double largeTime = (double) largeTimes[phase] / large;
+                        double growth = largeTime / smallTime;
+                        String result = String.format("%s %s, unique ratio %.1f: %.0f ns per component at %d, %.0f ns per component at %d, growth %.2f", shape, phases[phase], uniqueRatio, smallTime, small, largeTime, large, growth);
+                        System.out.println(result);
+                        if (growth > factor) {
+                            failures.add(result);
+                        }
+                    }
+                }
+            }
+        } finally {
+            logger.terminate();
+        }
+        if (!failures.isEmpty()) {
+            System.out.printf("%d measurements grew by more than a factor of %.2f:%n", failures.size(), factor);
+            failures.forEach(System.out::println);
+            return false;
+        }
+        System.out.printf("Every measurement grew by at most a factor of %.2f%n", factor);
+        return true;
+    }
+
+    /**
+     * Measures the fastest build and instantiation of the given graph.
+     * @param logger The logger of the trees.
+     * @param graph The graph.
+     * @return The fastest build and instantiation times, in nanoseconds.
+     * @throws IOException If the descriptor of the graph could not be read.
+     */
+    private long[] measure(RootLogger logger, SyntheticGraph graph) throws IOException {
+        int warmup = Integer.parseInt(options.get("--warmup"));
+        int runs = Integer.parseInt(options.get("--runs"));
+        byte[] descriptor = graph.describe();
+        ClassLoader loader = new SyntheticGraph.SyntheticClassLoader(graph);
+        long[] result = {Long.MAX_VALUE, Long.MAX_VALUE};
+        for (int run = 0; run < warmup + runs; run++) {
+            System.gc();
+            long start = System.nanoTime();
+            DependencyTree tree = new DependencyTree(logger, ComponentContainer.toComponents(descriptor, loader).stream());
+            long built = System.nanoTime();
+            tree.instantiateModules();
+            long end = System.nanoTime();
+            if (run >= warmup) {
+                result[0] = Math.min(result[0], built - start);
+                result[1] = Math.min(result[1], end - built);
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,66 @@
+package atunstall.server.core.benchmark;
+
+import atunstall.server.core.api.ModuleFactory;
+import atunstall.server.core.impl.container.ComponentContainer;
+import atunstall.server.core.impl.dependency.DependencyTree;
+import atunstall.server.core.impl.logging.RootLogger;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Cost of creating a module through an injected {@link Supplier}, compared to calling its factory directly.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class SupplierBenchmark {
+    private static final Object[] NO_ARGUMENTS = new Object[0];
+
+    private RootLogger logger;
+    private Supplier<?> supplier;
+    private ModuleFactory<?> factory;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        logger = new RootLogger();
+        SyntheticGraph graph = SyntheticGraph.ofSupplier();
+        ClassLoader loader = new SyntheticGraph.SyntheticClassLoader(graph);
+        DependencyTree tree = new DependencyTree(logger, ComponentContainer.toComponents(graph.describe(), loader).stream());
+        tree.instantiateModules();
+        Class<?> consumer = loader.loadClass(SyntheticGraph.getModuleName(1));
+        SyntheticComponent instance = (SyntheticComponent) tree.getModuleNode(consumer).orElseThrow(IllegalStateException::new).getInstance();
+        supplier = (Supplier<?>) instance.getDependencies()[0];
+        factory = (ModuleFactory<?>) loader.loadClass(SyntheticGraph.getModuleName(2) + ModuleFactory.SUFFIX).getConstructor().newInstance();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        logger.terminate();
+    }
+
+    @Benchmark
+    public Object supplierGet() {
+        return supplier.get();
+    }
+
+    @Benchmark
+    public Object factoryCreate() throws Exception {
+        return factory.create(NO_ARGUMENTS);
+    }
+}
@@ -0,0 +1,12 @@
+package atunstall.server.core.benchmark;
+
+/**
+ * Common interface of the synthetic modules created by {@link SyntheticGraph}.
+ */
+public interface SyntheticComponent {
+    /**
+     * Returns the arguments this module was created with.
+     * @return The injected dependencies.
+     */
+    Object[] getDependencies();
+}
@@ -0,0 +1,250 @@
+package atunstall.server.core.benchmark;
+
+import atunstall.server.core.api.ModuleFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Synthetic dependency graph and the component descriptor describing it.
+ * Module {@code i} implements service {@code i} and depends on other services according to the shape of the graph.
+ * The classes of the modules, of their factories and of the services are copies of the templates defined by {@link SyntheticClassLoader}.
+ */
+public final class SyntheticGraph {
+    private static final int DESCRIPTOR_MAGIC = 0x4D534344;
+    private static final int DESCRIPTOR_FORMAT_VERSION = 1;
+    private static final int DESCRIPTOR_VERSION = 0;
+    private static final int DESCRIPTOR_MODULE = 1;
+    private static final String PACKAGE = SyntheticGraph.class.getPackageName();
+    private static final String MODULE_PREFIX = PACKAGE + ".SyntheticModule";
+    private static final String SERVICE_PREFIX = PACKAGE + ".SyntheticService";
+    private static final String SERVICE_TEMPLATE = SyntheticServiceOwn00.class.getSimpleName();
+    private static final String[] DEPENDENCY_TEMPLATES = {SyntheticServiceDep01.class.getSimpleName(), SyntheticServiceDep02.class.getSimpleName()};
+    private static final String[] MODULE_TEMPLATES = {SyntheticModuleDeps0.class.getSimpleName(), SyntheticModuleDeps1.class.getSimpleName(), SyntheticModuleDeps2.class.getSimpleName()};
+    private static final String SUPPLIER_TEMPLATE = SyntheticModuleSupp1.class.getSimpleName();
+    private static final int MAX_SIZE = 99999;
+
+    /**
+     * Shape of a synthetic graph.
+     * Modules have at most two dependencies, like the templates they are copied from.
+     */
+    public enum Shape {
+        /**
+         * Module {@code i} depends on module {@code i + 1}.
+         */
+        CHAIN,
+
+        /**
+         * Module {@code i} depends on modules {@code 2i} and {@code 2i + 1}.
+         */
+        TREE,
+
+        /**
+         * Every other module depends on module 1.
+         */
+        STAR,
+
+        /**
+         * Module {@code i} depends on module {@code i + 1} and on the shared module {@code size}, which is reached through every path of the graph.
+         */
+        DIAMOND
+    }
+
+    private final List<List<Integer>> dependencies;
+    private final double uniqueRatio;
+    private final boolean suppliers;
+
+    private SyntheticGraph(List<List<Integer>> dependencies, double uniqueRatio, boolean suppliers) {
+        this.dependencies = dependencies;
+        this.uniqueRatio = uniqueRatio;
+        this.suppliers = suppliers;
+    }
+
+    /**
+     * Creates a graph of the given shape.
+     * @param shape The shape of the graph.
+     * @param size The number of modules.
+     * @param uniqueRatio The ratio of services that are unique, spread evenly over the graph.
+     * @return The graph.
+     */
+    static SyntheticGraph of(Shape shape, int size, double uniqueRatio) {
+        if (size < 1 || size > MAX_SIZE) {
+            throw new IllegalArgumentException("unsupported graph size " + size);
+        }
+        List<List<Integer>> dependencies = new ArrayList<>();
+        for (int index = 1; index <= size; index++) {
+            List<Integer> targets = new ArrayList<>();
+            switch (shape) {
+                case CHAIN:
+                    targets.add(index + 1);
+                    break;
+                case TREE:
+                    targets.add(2 * index);
+                    targets.add(2 * index + 1);
+                    break;
+                case STAR:
+                    if (index > 1) {
+                        targets.add(1);
+                    }
+                    break;
+                case DIAMOND:
+                    if (index < size - 1) {
+                        targets.add(index + 1);
+                    }
+                    if (index < size) {
+                        targets.add(size);
+                    }
+                    break;
+            }
+            targets.removeIf(target -> target > size);
+            dependencies.add(targets);
+        }
+        return new SyntheticGraph(dependencies, uniqueRatio, false);
+    }
+
+    /**
+     * Creates a graph where module 1 depends on a {@link java.util.function.Supplier} of service 2.
+     * @return The graph.
+     */
+    static SyntheticGraph ofSupplier() {
+        List<List<Integer>> dependencies = new ArrayList<>();
+        dependencies.add(List.of(2));
+        dependencies.add(List.of());
+        return new SyntheticGraph(dependencies, 0D, true);
+    }
+
+    static String getModuleName(int index) {
+        return MODULE_PREFIX + String.format("%05d", index);
+    }
+
+    private static String getServiceName(int index) {
+        return SERVICE_PREFIX + String.format("%05d", index);
+    }
+
+    /**
+     * Returns the component descriptor of this graph.
+     * @return The descriptor.
+     */
+    byte[] describe() {
+        int size = dependencies.size();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(DESCRIPTOR_MAGIC);
+            out.writeByte(DESCRIPTOR_FORMAT_VERSION);
+            out.writeInt(2 * size);
+            for (int index = 1; index <= size; index++) {
+                out.writeByte(DESCRIPTOR_VERSION);
+                out.writeUTF(getServiceName(index));
+                out.writeInt(1);
+                out.writeInt(0);
+                out.writeBoolean(Math.floor(index * uniqueRatio) > Math.floor((index - 1) * uniqueRatio));
+            }
+            for (int index = 1; index <= size; index++) {
+                out.writeByte(DESCRIPTOR_MODULE);
+                out.writeUTF(getModuleName(index));
+                out.writeShort(1);
+                out.writeUTF(getServiceName(index));
+                List<Integer> targets = dependencies.get(index - 1);
+                out.writeShort(targets.size());
+                for (int target : targets) {
+                    out.writeUTF(getServiceName(target));
+                    out.writeInt(1);
+                    out.writeInt(0);
+                    out.writeBoolean(suppliers);
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Class loader defining the classes of the modules of a graph, of their factories and of their services by renaming the template classes.
+     * The factories of the templates are generated by the annotation processor, so the copies describe the same dependencies as the descriptor.
+     * The names of the copies have the same length as the templates', so renaming them only replaces bytes of the class files.
+     */
+    static class SyntheticClassLoader extends ClassLoader {
+        private final SyntheticGraph graph;
+        private final Map<String, byte[]> templates = new HashMap<>();
+
+        SyntheticClassLoader(SyntheticGraph graph) {
+            super(SyntheticGraph.class.getClassLoader());
+            this.graph = graph;
+        }
+
+        @Override
+        protected Class<?> findClass(String name) throws ClassNotFoundException {
+            boolean isFactory = name.endsWith(ModuleFactory.SUFFIX);
+            String className = isFactory ? name.substring(0, name.length() - ModuleFactory.SUFFIX.length()) : name;
+            byte[] bytes;
+            if (!isFactory && className.startsWith(SERVICE_PREFIX) && className.length() == SERVICE_PREFIX.length() + 5) {
+                bytes = rename(getTemplate(SERVICE_TEMPLATE), Map.of(SERVICE_TEMPLATE, className.substring(PACKAGE.length() + 1)));
+            } else if (className.startsWith(MODULE_PREFIX) && className.length() == MODULE_PREFIX.length() + 5) {
+                int index = parseIndex(className.substring(MODULE_PREFIX.length()));
+                if (index < 1 || index > graph.dependencies.size()) {
+                    throw new ClassNotFoundException(name);
+                }
+                List<Integer> targets = graph.dependencies.get(index - 1);
+                String template = graph.suppliers && targets.size() > 0 ? SUPPLIER_TEMPLATE : MODULE_TEMPLATES[targets.size()];
+                Map<String, String> names = new HashMap<>();
+                names.put(template, className.substring(PACKAGE.length() + 1));
+                names.put(SERVICE_TEMPLATE, getServiceName(index).substring(PACKAGE.length() + 1));
+                for (int dependency = 0; dependency < targets.size(); dependency++) {
+                    names.put(DEPENDENCY_TEMPLATES[dependency], getServiceName(targets.get(dependency)).substring(PACKAGE.length() + 1));
+                }
+                bytes = rename(getTemplate(isFactory ? template + ModuleFactory.SUFFIX : template), names);
+            } else {
+                throw new ClassNotFoundException(name);
+            }
+            return defineClass(name, bytes, 0, bytes.length);
+        }
+
+        private synchronized byte[] getTemplate(String simpleName) {
+            return templates.computeIfAbsent(simpleName, SyntheticClassLoader::read);
+        }
+
+        private static int parseIndex(String index) {
+            try {
+                return Integer.parseInt(index);
+            } catch (NumberFormatException e) {
+                return -1;
+            }
+        }
+
+        private static byte[] rename(byte[] template, Map<String, String> names) {
+            byte[] result = template.clone();
+            names.forEach((name, replacement) -> {
+                byte[] from = name.getBytes(StandardCharsets.US_ASCII);
+                byte[] to = replacement.getBytes(StandardCharsets.US_ASCII);
+                for (int index = 0; index <= result.length - from.length; index++) {
+                    int length = 0;
+                    while (length < from.length && result[index + length] == from[length]) {
+                        length++;
+                    }
+                    if (length == from.length) {
+                        System.arraycopy(to, 0, result, index, to.length);
+                        index += to.length - 1;
+                    }
+                }
+            });
+            return result;
+        }
+
+        private static byte[] read(String simpleName) {
+            try (InputStream in = SyntheticGraph.class.getResourceAsStream(simpleName + ".class")) {
+                return in.readAllBytes();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+}
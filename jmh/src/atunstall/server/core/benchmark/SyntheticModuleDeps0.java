@@ -0,0 +1,20 @@
+package atunstall.server.core.benchmark;
+
+import atunstall.server.core.api.Module;
+
+/**
+ * Template of the synthetic modules without dependencies.
+ */
+@Module
+public class SyntheticModuleDeps0 implements SyntheticServiceOwn00, SyntheticComponent {
+    private static final Object[] NO_DEPENDENCIES = new Object[0];
+
+    public SyntheticModuleDeps0() {
+        // Empty
+    }
+
+    @Override
+    public Object[] getDependencies() {
+        return NO_DEPENDENCIES;
+    }
+}
@@ -0,0 +1,21 @@
+package atunstall.server.core.benchmark;
+
+import atunstall.server.core.api.Module;
+import atunstall.server.core.api.Version;
+
+/**
+ * Template of the synthetic modules with one dependency.
+ */
+@Module
+public class SyntheticModuleDeps1 implements SyntheticServiceOwn00, SyntheticComponent {
+    private final Object[] dependencies;
+
+    public SyntheticModuleDeps1(@Version(major = 1, minor = 0) SyntheticServiceDep01 first) {
+        dependencies = new Object[] {first};
+    }
+
+    @Override
+    public Object[] getDependencies() {
+        return dependencies;
+    }
+}
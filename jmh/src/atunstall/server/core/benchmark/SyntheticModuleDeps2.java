@@ -0,0 +1,21 @@
+package atunstall.server.core.benchmark;
+
+import atunstall.server.core.api.Module;
+import atunstall.server.core.api.Version;
+
+/**
+ * Template of the synthetic modules with two dependencies.
+ */
+@Module
+public class SyntheticModuleDeps2 implements SyntheticServiceOwn00, SyntheticComponent {
+    private final Object[] dependencies;
+
+    public SyntheticModuleDeps2(@Version(major = 1, minor = 0) SyntheticServiceDep01 first, @Version(major = 1, minor = 0) SyntheticServiceDep02 second) {
+        dependencies = new Object[] {first, second};
+    }
+
+    @Override
+    public Object[] getDependencies() {
+        return dependencies;
+    }
+}
@@ -0,0 +1,23 @@
+package atunstall.server.core.benchmark;
+
+import atunstall.server.core.api.Module;
+import atunstall.server.core.api.Version;
+
+import java.util.function.Supplier;
+
+/**
+ * Template of the synthetic modules with one dependency injected through a {@link Supplier}.
+ */
+@Module
+public class SyntheticModuleSupp1 implements SyntheticServiceOwn00, SyntheticComponent {
+    private final Object[] dependencies;
+
+    public SyntheticModuleSupp1(@Version(major = 1, minor = 0) Supplier<SyntheticServiceDep01> first) {
+        dependencies = new Object[] {first};
+    }
+
+    @Override
+    public Object[] getDependencies() {
+        return dependencies;
+    }
+}
@@ -0,0 +1,11 @@
+package atunstall.server.core.benchmark;
+
+import atunstall.server.core.api.Version;
+
+/**
+ * Template of the service injected as the second dependency of a synthetic module.
+ */
+@Version(major = 1, minor = 0)
+public interface SyntheticServiceDep02 {
+    // Empty
+}
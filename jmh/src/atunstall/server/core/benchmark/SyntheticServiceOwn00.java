@@ -0,0 +1,11 @@
+package atunstall.server.core.benchmark;
+
+import atunstall.server.core.api.Version;
+
+/**
+ * Template of the service implemented by a synthetic module.
+ */
+@Version(major = 1, minor = 0)
+public interface SyntheticServiceOwn00 {
+    // Empty
+}
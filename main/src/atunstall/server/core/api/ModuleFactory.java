@@ -0,0 +1,63 @@
+package atunstall.server.core.api;
+
+/**
+ * Creates instances of a module without the use of reflection.
+ * An implementation of this interface is generated at compile time for every {@link Module}-annotated type, it should not be implemented manually.
+ * The generated implementation is named after the binary name of the module followed by {@link #SUFFIX}.
+ * @param <T> The type of the module.
+ */
+public interface ModuleFactory<T> {
+    /**
+     * The suffix appended to the binary name of a module to obtain the binary name of its factory.
+     */
+    String SUFFIX = "_Factory";
+
+    /**
+     * Returns the module type whose instances are created by this factory.
+     * @return The module type.
+     */
+    Class<T> getModule();
+
+    /**
+     * Returns the number of parameters of the module's constructor.
+     * @return The number of dependencies.
+     */
+    int getDependencyCount();
+
+    /**
+     * Returns the {@link Version}-annotated interface injected as the parameter at the given index.
+     * If the parameter is a {@link java.util.function.Supplier}, then this is the type supplied by it.
+     * @param index The index of the parameter.
+     * @return The type of the dependency.
+     */
+    Class<?> getDependencyType(int index);
+
+    /**
+     * Checks if the parameter at the given index is a {@link java.util.function.Supplier} of the dependency.
+     * @param index The index of the parameter.
+     * @return True if the parameter is a supplier, false otherwise.
+     */
+    boolean isSupplier(int index);
+
+    /**
+     * Returns the major component of the version the parameter at the given index must be compatible with.
+     * @param index The index of the parameter.
+     * @return The required major version.
+     */
+    int getMajorVersion(int index);
+
+    /**
+     * Returns the minor component of the version the parameter at the given index must be compatible with.
+     * @param index The index of the parameter.
+     * @return The required minor version.
+     */
+    int getMinorVersion(int index);
+
+    /**
+     * Creates a new instance of the module.
+     * @param arguments The arguments to pass to the module's constructor, in order.
+     * @return The new instance.
+     * @throws Exception If the module's constructor throws an exception.
+     */
+    T create(Object[] arguments) throws Exception;
+}
@@ -0,0 +1,30 @@
+package atunstall.server.core.api.logging;
+
+/**
+ * Statistics of a listener added with {@link Logger#addIsolatedListener(java.util.function.Consumer, java.util.function.Predicate, int, OverflowPolicy)}.
+ */
+public interface IsolatedListener {
+    /**
+     * Returns the number of messages waiting to be passed to the listener.
+     * @return The number of pending messages.
+     */
+    int getPendingCount();
+
+    /**
+     * Returns the number of messages passed to the listener so far.
+     * @return The number of delivered messages.
+     */
+    long getDeliveredCount();
+
+    /**
+     * Returns the number of messages dropped because the listener's queue was full.
+     * @return The number of dropped messages.
+     */
+    long getDroppedCount();
+
+    /**
+     * Returns how long the last delivered message waited between being logged and being passed to the listener.
+     * @return The lag in milliseconds.
+     */
+    long getLag();
+}
@@ -5,13 +5,14 @@ import atunstall.server.core.api.Version;
 
 import java.util.function.Consumer;
 import java.util.function.Predicate;
+import java.util.function.Supplier;
 
 /**
  * An interface used for logging.
  * The root logger is always the logger obtained through dependency injection.
  */
 @Unique
-@Version(major = 1, minor = 0)
+@Version(major = 1, minor = 2)
 public interface Logger {
     /**
      * Returns the full name of this logger.
@@ -32,11 +33,26 @@ public interface Logger {
     /**
      * Adds the given listener to this logger.
      * This logger and all its children's messages will be passed to the listener if their level isn't filtered out.
+     * The level filter may be evaluated ahead of time for every level, so its result must only depend on the level it is given.
      * @param listener The listener to add to this logger.
      * @param levelFilter The level filter to assign to this listener. The message will only be passed on to the listener if this filter returns true for its level.
      */
     void addListener(Consumer<LogMessage> listener, Predicate<Level> levelFilter);
 
+    /**
+     * Adds the given listener to this logger, passing messages to it on a dedicated thread.
+     * Messages are queued for the listener, so a slow listener never delays the other listeners.
+     * Removing the listener stops its thread once the queued messages have been passed to it.
+     * The level filter may be evaluated ahead of time for every level, so its result must only depend on the level it is given.
+     * @param listener The listener to add to this logger.
+     * @param levelFilter The level filter to assign to this listener. The message will only be passed on to the listener if this filter returns true for its level.
+     * @param capacity The maximum number of messages waiting to be passed to the listener.
+     * @param policy The policy applied to messages once the listener's queue is full.
+     * @return The statistics of the listener's queue.
+     * @since 1.2
+     */
+    IsolatedListener addIsolatedListener(Consumer<LogMessage> listener, Predicate<Level> levelFilter, int capacity, OverflowPolicy policy);
+
     /**
      * Removes the given listener from this logger.
      * This method fails silently if the given listener hadn't been added.
@@ -44,6 +60,15 @@ public interface Logger {
      */
     void removeListener(Consumer<LogMessage> listener);
 
+    /**
+     * Checks if a message logged at the given level with this logger would be passed to at least one listener.
+     * Messages logged at a level that isn't enabled are discarded without being formatted.
+     * @param level The level to check.
+     * @return True if the level is enabled, false otherwise.
+     * @since 1.1
+     */
+    boolean isEnabled(Level level);
+
     /**
      * Logs the given message at the given level.
      * @param level The level at which to log the message.
@@ -58,4 +83,33 @@ public interface Logger {
      * @param throwable The throwable to log.
      */
     void log(Level level, String message, Throwable throwable);
+
+    /**
+     * Logs the message obtained by formatting the given pattern with the given arguments at the given level.
+     * The message is formatted using {@link String#format(String, Object...)} on the logging thread, and only if the level is enabled.
+     * @param level The level at which to log the message.
+     * @param pattern The pattern of the message to log.
+     * @param args The arguments referenced by the pattern.
+     * @since 1.1
+     */
+    void log(Level level, String pattern, Object... args);
+
+    /**
+     * Logs the message returned by the given supplier at the given level.
+     * The supplier is called on the logging thread, and only if the level is enabled.
+     * @param level The level at which to log the message.
+     * @param message The supplier of the message to log.
+     * @since 1.1
+     */
+    void log(Level level, Supplier<String> message);
+
+    /**
+     * Logs the message returned by the given supplier and the given throwable at the given level.
+     * The supplier is called on the logging thread, and only if the level is enabled.
+     * @param level The level at which to log the message and throwable.
+     * @param message The supplier of the message to log.
+     * @param throwable The throwable to log.
+     * @since 1.1
+     */
+    void log(Level level, Supplier<String> message, Throwable throwable);
 }
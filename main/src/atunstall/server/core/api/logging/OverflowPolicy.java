@@ -0,0 +1,27 @@
+package atunstall.server.core.api.logging;
+
+/**
+ * Determines what happens to a message passed to a bounded logging queue while the queue is under pressure.
+ * Error messages are never dropped, whatever the policy is.
+ */
+public enum OverflowPolicy {
+    /**
+     * Waits for the queue to have room for the message.
+     */
+    BLOCK,
+
+    /**
+     * Drops the message if the queue is full.
+     */
+    DROP_NEWEST,
+
+    /**
+     * Waits for the queue to have room for the message, but lets the thread draining the queue discard queued messages with this policy without dispatching them while the queue is full.
+     */
+    DROP_OLDEST,
+
+    /**
+     * Only keeps a fraction of the messages once the queue is half full, and drops the message if the queue is full.
+     */
+    SAMPLE
+}
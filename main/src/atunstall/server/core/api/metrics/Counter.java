@@ -0,0 +1,23 @@
+package atunstall.server.core.api.metrics;
+
+/**
+ * A monotonic counter that may be incremented concurrently without contention.
+ */
+public interface Counter {
+    /**
+     * Adds one to this counter.
+     */
+    void increment();
+
+    /**
+     * Adds the given amount to this counter.
+     * @param amount The amount to add, which must not be negative.
+     */
+    void add(long amount);
+
+    /**
+     * Returns the current value of this counter.
+     * @return The sum of every amount added to this counter.
+     */
+    long get();
+}
@@ -0,0 +1,24 @@
+package atunstall.server.core.api.metrics;
+
+/**
+ * A value that may go up and down, such as the size of a queue.
+ */
+public interface Gauge {
+    /**
+     * Sets the value of this gauge.
+     * @param value The new value.
+     */
+    void set(long value);
+
+    /**
+     * Adds the given amount to this gauge.
+     * @param amount The amount to add, which may be negative.
+     */
+    void add(long amount);
+
+    /**
+     * Returns the current value of this gauge.
+     * @return The value.
+     */
+    long get();
+}
@@ -0,0 +1,27 @@
+package atunstall.server.core.api.metrics;
+
+/**
+ * A distribution of non-negative values, such as latencies in nanoseconds.
+ * Values are counted in fixed buckets whose width grows with their bounds, so that any value is known within 12.5% of its actual value.
+ * Recording a value doesn't allocate.
+ */
+public interface Histogram {
+    /**
+     * Records the given value.
+     * Negative values are recorded as 0.
+     * @param value The value to record.
+     */
+    void record(long value);
+
+    /**
+     * Records the time elapsed since the given start time.
+     * @param start The start time, obtained through {@link System#nanoTime()}.
+     */
+    void recordSince(long start);
+
+    /**
+     * Takes a snapshot of this histogram.
+     * @return The snapshot.
+     */
+    HistogramSnapshot snapshot();
+}
@@ -0,0 +1,37 @@
+package atunstall.server.core.api.metrics;
+
+/**
+ * The values recorded by a {@link Histogram} at a given time.
+ */
+public interface HistogramSnapshot {
+    /**
+     * Returns the number of recorded values.
+     * @return The count.
+     */
+    long getCount();
+
+    /**
+     * Returns the sum of the recorded values.
+     * @return The sum.
+     */
+    long getSum();
+
+    /**
+     * Returns the mean of the recorded values.
+     * @return The mean, or 0 if no value was recorded.
+     */
+    double getMean();
+
+    /**
+     * Returns an upper bound of the given percentile of the recorded values.
+     * @param percentile The percentile, between 0 and 100.
+     * @return The upper bound of the bucket containing the percentile, or 0 if no value was recorded.
+     */
+    long getPercentile(double percentile);
+
+    /**
+     * Returns an upper bound of the largest recorded value.
+     * @return The upper bound of the highest non-empty bucket, or 0 if no value was recorded.
+     */
+    long getMax();
+}
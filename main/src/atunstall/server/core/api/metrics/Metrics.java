@@ -0,0 +1,69 @@
+package atunstall.server.core.api.metrics;
+
+import atunstall.server.core.api.Unique;
+import atunstall.server.core.api.Version;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.LongSupplier;
+
+/**
+ * An interface used for counting events and measuring values.
+ * Metrics are identified by their name, and asking for a metric that already exists returns the existing metric.
+ * Counters, gauges and histograms have separate namespaces.
+ */
+@Unique
+@Version(major = 1, minor = 0)
+public interface Metrics {
+    /**
+     * Returns the counter with the specified name, creating it if it does not exist.
+     * @param name The name of the counter.
+     * @return The counter.
+     */
+    Counter getCounter(String name);
+
+    /**
+     * Returns the gauge with the specified name, creating it if it does not exist.
+     * @param name The name of the gauge.
+     * @return The gauge.
+     */
+    Gauge getGauge(String name);
+
+    /**
+     * Registers a gauge whose value is read from the given supplier whenever a snapshot is taken.
+     * This replaces any gauge with the same name.
+     * @param name The name of the gauge.
+     * @param value The supplier of the gauge's value. It may be called concurrently and must be fast.
+     */
+    void addGauge(String name, LongSupplier value);
+
+    /**
+     * Returns the histogram with the specified name, creating it if it does not exist.
+     * @param name The name of the histogram.
+     * @return The histogram.
+     */
+    Histogram getHistogram(String name);
+
+    /**
+     * Takes a snapshot of every metric.
+     * Metrics updated while the snapshot is taken may or may not include the updates.
+     * @return The snapshot.
+     */
+    MetricsSnapshot snapshot();
+
+    /**
+     * Adds the given exporter, which will be passed a snapshot of every metric at a fixed rate.
+     * Exporters are called on a dedicated thread, one after the other.
+     * @param exporter The exporter to add.
+     * @param period The time between two snapshots.
+     * @param unit The unit of the period.
+     */
+    void addExporter(Consumer<MetricsSnapshot> exporter, long period, TimeUnit unit);
+
+    /**
+     * Removes the given exporter.
+     * This method fails silently if the given exporter hadn't been added.
+     * @param exporter The exporter to remove.
+     */
+    void removeExporter(Consumer<MetricsSnapshot> exporter);
+}
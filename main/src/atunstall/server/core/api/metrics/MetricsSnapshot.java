@@ -0,0 +1,32 @@
+package atunstall.server.core.api.metrics;
+
+import java.util.Map;
+
+/**
+ * The values of every metric at a given time.
+ */
+public interface MetricsSnapshot {
+    /**
+     * Returns the time at which this snapshot was taken.
+     * @return The time in milliseconds since the epoch.
+     */
+    long getTimestamp();
+
+    /**
+     * Returns the value of every counter.
+     * @return An unmodifiable map from the counters' names to their values, sorted by name.
+     */
+    Map<String, Long> getCounters();
+
+    /**
+     * Returns the value of every gauge.
+     * @return An unmodifiable map from the gauges' names to their values, sorted by name.
+     */
+    Map<String, Long> getGauges();
+
+    /**
+     * Returns a snapshot of every histogram.
+     * @return An unmodifiable map from the histograms' names to their snapshots, sorted by name.
+     */
+    Map<String, HistogramSnapshot> getHistograms();
+}
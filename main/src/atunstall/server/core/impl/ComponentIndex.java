@@ -0,0 +1,350 @@
+package atunstall.server.core.impl;
+
+import atunstall.server.core.api.logging.Level;
+import atunstall.server.core.api.logging.Logger;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.module.ModuleDescriptor;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * Persistent index of the module descriptor, components and component descriptors found in each JAR of the components directory.
+ * A JAR only needs to be scanned again if its size or modification time changed and its content hash no longer matches the indexed one.
+ * Since the module descriptors are indexed too, the module layer of indexed JARs can be defined without opening them.
+ * JARs may be looked up and stored concurrently.
+ */
+class ComponentIndex {
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final String HEADER = "# Component index v3";
+    private static final String HASH_ALGORITHM = "SHA-256";
+    private static final char SEPARATOR = '\t';
+    private static final String COMPONENT_SEPARATOR = " ";
+    private static final String TEMPORARY_SUFFIX = ".tmp";
+
+    private final Logger logger;
+    private final Path file;
+    private final Map<String, Entry> entries;
+    private volatile boolean modified;
+
+    private ComponentIndex(Logger logger, Path file) {
+        this.logger = logger;
+        this.file = file;
+        entries = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Loads the index stored in the given file.
+     * An empty index is returned if the file does not exist or cannot be read.
+     * @param logger The logger to report errors to.
+     * @param file The file storing the index.
+     * @return The loaded index.
+     */
+    static ComponentIndex load(Logger logger, Path file) {
+        ComponentIndex index = new ComponentIndex(logger, file);
+        try (BufferedReader reader = Files.newBufferedReader(file, UTF_8)) {
+            if (!HEADER.equals(reader.readLine())) {
+                logger.log(Level.INFO, "Ignoring outdated component index " + file);
+                index.modified = true;
+                return index;
+            }
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] fields = line.split(String.valueOf(SEPARATOR), -1);
+                Set<String> names = new HashSet<>();
+                if (!fields[4].isEmpty()) {
+                    names.addAll(Arrays.asList(fields[4].split(COMPONENT_SEPARATOR)));
+                }
+                List<byte[]> descriptors = new ArrayList<>();
+                if (!fields[5].isEmpty()) {
+                    Arrays.stream(fields[5].split(COMPONENT_SEPARATOR)).map(Base64.getDecoder()::decode).forEach(descriptors::add);
+                }
+                ModuleDescriptor module = readModule(Base64.getDecoder().decode(fields[6]));
+                index.entries.put(fields[0], new Entry(Long.parseLong(fields[1]), Long.parseLong(fields[2]), fields[3], new ComponentSource(fields[0], module, names, descriptors)));
+            }
+        } catch (NoSuchFileException e) {
+            index.modified = true;
+        } catch (IOException | RuntimeException e) {
+            logger.log(Level.WARNING, "Error while reading component index " + file, e);
+            index.entries.clear();
+            index.modified = true;
+        }
+        return index;
+    }
+
+    /**
+     * Returns the indexed components of the given JAR if the JAR hasn't changed since it was indexed.
+     * @param jar The JAR whose components to return.
+     * @return The components of the JAR, or {@link Optional#empty()} if the JAR must be scanned.
+     * @throws IOException If an I/O error occurs while checking the JAR.
+     */
+    Optional<ComponentSource> getComponents(Path jar) throws IOException {
+        Entry entry = entries.get(jar.toString());
+        if (entry == null) {
+            return Optional.empty();
+        }
+        BasicFileAttributes attributes = Files.readAttributes(jar, BasicFileAttributes.class);
+        long lastModified = attributes.lastModifiedTime().toMillis();
+        if (entry.size == attributes.size() && entry.lastModified == lastModified) {
+            return Optional.of(entry.components);
+        }
+        if (entry.size == attributes.size() && entry.hash.equals(hash(jar))) {
+            entries.put(jar.toString(), new Entry(entry.size, lastModified, entry.hash, entry.components));
+            modified = true;
+            return Optional.of(entry.components);
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Stores the components found while scanning the given JAR.
+     * @param jar The scanned JAR.
+     * @param components The components found in the JAR.
+     * @throws IOException If an I/O error occurs while hashing the JAR.
+     */
+    void putComponents(Path jar, ComponentSource components) throws IOException {
+        BasicFileAttributes attributes = Files.readAttributes(jar, BasicFileAttributes.class);
+        entries.put(jar.toString(), new Entry(attributes.size(), attributes.lastModifiedTime().toMillis(), hash(jar), components));
+        modified = true;
+    }
+
+    /**
+     * Removes the entries of all JARs that aren't in the given collection.
+     * @param jars The JARs whose entries to keep.
+     */
+    void retain(Collection<Path> jars) {
+        Set<String> names = new HashSet<>();
+        jars.forEach(jar -> names.add(jar.toString()));
+        if (entries.keySet().retainAll(names)) {
+            modified = true;
+        }
+    }
+
+    /**
+     * Writes this index to its file if it changed since it was loaded.
+     * The index is written to a temporary file which then replaces the file, so that an interrupted write never leaves a truncated index.
+     */
+    void save() {
+        if (!modified) {
+            return;
+        }
+        Path temporary = file.resolveSibling(file.getFileName() + TEMPORARY_SUFFIX);
+        try (BufferedWriter writer = Files.newBufferedWriter(temporary, UTF_8)) {
+            writer.append(HEADER).append('\n');
+            for (Map.Entry<String, Entry> entry : entries.entrySet()) {
+                Entry value = entry.getValue();
+                writer.append(entry.getKey()).append(SEPARATOR).append(String.valueOf(value.size)).append(SEPARATOR).append(String.valueOf(value.lastModified)).append(SEPARATOR)
+                        .append(value.hash).append(SEPARATOR).append(String.join(COMPONENT_SEPARATOR, value.components.getNames())).append(SEPARATOR)
+                        .append(value.components.getDescriptors().stream().map(Base64.getEncoder()::encodeToString).collect(Collectors.joining(COMPONENT_SEPARATOR))).append(SEPARATOR)
+                        .append(Base64.getEncoder().encodeToString(writeModule(value.components.getModule()))).append('\n');
+            }
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Error while writing component index " + file, e);
+            delete(temporary);
+            return;
+        }
+        try {
+            Files.move(temporary, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            modified = false;
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Error while replacing component index " + file, e);
+            delete(temporary);
+        }
+    }
+
+    private void delete(Path temporary) {
+        try {
+            Files.deleteIfExists(temporary);
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Error while deleting " + temporary, e);
+        }
+    }
+
+    /**
+     * Serializes a module descriptor, including the packages and service providers found in its JAR.
+     * @param module The module descriptor.
+     * @return The serialized descriptor.
+     * @throws IOException Never thrown in practice.
+     */
+    private static byte[] writeModule(ModuleDescriptor module) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeUTF(module.name());
+            writeNames(out, module.modifiers().stream().map(Enum::name).collect(Collectors.toList()));
+            out.writeUTF(module.rawVersion().orElse(""));
+            out.writeUTF(module.mainClass().orElse(""));
+            writeNames(out, module.packages());
+            out.writeInt(module.provides().size());
+            for (ModuleDescriptor.Provides provides : module.provides()) {
+                out.writeUTF(provides.service());
+                writeNames(out, provides.providers());
+            }
+            if (module.isAutomatic()) {
+                return bytes.toByteArray();
+            }
+            out.writeInt(module.requires().size());
+            for (ModuleDescriptor.Requires requires : module.requires()) {
+                out.writeUTF(requires.name());
+                writeNames(out, requires.modifiers().stream().map(Enum::name).collect(Collectors.toList()));
+                out.writeUTF(requires.rawCompiledVersion().orElse(""));
+            }
+            out.writeInt(module.exports().size());
+            for (ModuleDescriptor.Exports exports : module.exports()) {
+                out.writeUTF(exports.source());
+                writeNames(out, exports.modifiers().stream().map(Enum::name).collect(Collectors.toList()));
+                writeNames(out, exports.targets());
+            }
+            out.writeInt(module.opens().size());
+            for (ModuleDescriptor.Opens opens : module.opens()) {
+                out.writeUTF(opens.source());
+                writeNames(out, opens.modifiers().stream().map(Enum::name).collect(Collectors.toList()));
+                writeNames(out, opens.targets());
+            }
+            writeNames(out, module.uses());
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Deserializes a module descriptor written by {@link #writeModule(ModuleDescriptor)}.
+     * @param data The serialized descriptor.
+     * @return The module descriptor.
+     * @throws IOException If the serialized descriptor is truncated.
+     */
+    private static ModuleDescriptor readModule(byte[] data) throws IOException {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(data))) {
+            String name = in.readUTF();
+            Set<ModuleDescriptor.Modifier> modifiers = toModifiers(readNames(in), ModuleDescriptor.Modifier.class);
+            boolean automatic = modifiers.contains(ModuleDescriptor.Modifier.AUTOMATIC);
+            ModuleDescriptor.Builder builder = automatic ? ModuleDescriptor.newAutomaticModule(name) : ModuleDescriptor.newModule(name, modifiers);
+            String version = in.readUTF();
+            if (!version.isEmpty()) {
+                builder.version(version);
+            }
+            String mainClass = in.readUTF();
+            builder.packages(new HashSet<>(readNames(in)));
+            if (!mainClass.isEmpty()) {
+                builder.mainClass(mainClass);
+            }
+            for (int count = in.readInt(); count > 0; count--) {
+                builder.provides(in.readUTF(), readNames(in));
+            }
+            if (automatic) {
+                return builder.build();
+            }
+            for (int count = in.readInt(); count > 0; count--) {
+                String module = in.readUTF();
+                Set<ModuleDescriptor.Requires.Modifier> requiresModifiers = toModifiers(readNames(in), ModuleDescriptor.Requires.Modifier.class);
+                String compiledVersion = in.readUTF();
+                if (compiledVersion.isEmpty()) {
+                    builder.requires(requiresModifiers, module);
+                } else {
+                    builder.requires(requiresModifiers, module, ModuleDescriptor.Version.parse(compiledVersion));
+                }
+            }
+            for (int count = in.readInt(); count > 0; count--) {
+                String source = in.readUTF();
+                Set<ModuleDescriptor.Exports.Modifier> exportsModifiers = toModifiers(readNames(in), ModuleDescriptor.Exports.Modifier.class);
+                Set<String> targets = new HashSet<>(readNames(in));
+                if (targets.isEmpty()) {
+                    builder.exports(exportsModifiers, source);
+                } else {
+                    builder.exports(exportsModifiers, source, targets);
+                }
+            }
+            for (int count = in.readInt(); count > 0; count--) {
+                String source = in.readUTF();
+                Set<ModuleDescriptor.Opens.Modifier> opensModifiers = toModifiers(readNames(in), ModuleDescriptor.Opens.Modifier.class);
+                Set<String> targets = new HashSet<>(readNames(in));
+                if (targets.isEmpty()) {
+                    builder.opens(opensModifiers, source);
+                } else {
+                    builder.opens(opensModifiers, source, targets);
+                }
+            }
+            readNames(in).forEach(builder::uses);
+            return builder.build();
+        }
+    }
+
+    private static void writeNames(DataOutputStream out, Collection<String> names) throws IOException {
+        out.writeInt(names.size());
+        for (String name : names) {
+            out.writeUTF(name);
+        }
+    }
+
+    private static List<String> readNames(DataInputStream in) throws IOException {
+        List<String> result = new ArrayList<>();
+        for (int count = in.readInt(); count > 0; count--) {
+            result.add(in.readUTF());
+        }
+        return result;
+    }
+
+    private static <T extends Enum<T>> Set<T> toModifiers(List<String> names, Class<T> type) {
+        Set<T> result = EnumSet.noneOf(type);
+        names.forEach(name -> result.add(Enum.valueOf(type, name)));
+        return result;
+    }
+
+    private static String hash(Path jar) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance(HASH_ALGORITHM);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("missing " + HASH_ALGORITHM + " implementation", e);
+        }
+        byte[] buffer = new byte[8192];
+        try (InputStream in = Files.newInputStream(jar)) {
+            int read;
+            while ((read = in.read(buffer)) >= 0) {
+                digest.update(buffer, 0, read);
+            }
+        }
+        StringBuilder builder = new StringBuilder();
+        for (byte b : digest.digest()) {
+            builder.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return builder.toString();
+    }
+
+    private static class Entry {
+        private final long size;
+        private final long lastModified;
+        private final String hash;
+        private final ComponentSource components;
+
+        private Entry(long size, long lastModified, String hash, ComponentSource components) {
+            this.size = size;
+            this.lastModified = lastModified;
+            this.hash = hash;
+            this.components = components;
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package atunstall.server.core.impl;
+
+import atunstall.server.core.api.logging.Level;
+import atunstall.server.core.api.logging.Logger;
+import atunstall.server.core.impl.container.ComponentContainer;
+
+import java.io.IOException;
+import java.lang.module.ModuleDescriptor;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Stream;
+
+/**
+ * Stores the components provided by a JAR or by a module of the boot layer, along with the descriptor of the module providing them.
+ * Components are read from the binary descriptors if there are any, otherwise their classes are loaded to inspect them.
+ */
+class ComponentSource {
+    private final String name;
+    private final ModuleDescriptor module;
+    private final Set<String> names;
+    private final List<byte[]> descriptors;
+
+    ComponentSource(String name, ModuleDescriptor module, Set<String> names, List<byte[]> descriptors) {
+        this.name = name;
+        this.module = module;
+        this.names = names;
+        this.descriptors = descriptors;
+    }
+
+    String getName() {
+        return name;
+    }
+
+    ModuleDescriptor getModule() {
+        return module;
+    }
+
+    Set<String> getNames() {
+        return names;
+    }
+
+    List<byte[]> getDescriptors() {
+        return descriptors;
+    }
+
+    Stream<ComponentContainer> toComponents(ClassLoader cl, Logger logger) {
+        if (descriptors.size() > 0) {
+            try {
+                List<ComponentContainer> components = new ArrayList<>();
+                for (byte[] descriptor : descriptors) {
+                    components.addAll(ComponentContainer.toComponents(descriptor, cl));
+                }
+                return components.stream();
+            } catch (IOException e) {
+                logger.log(Level.WARNING, "Error while reading the component descriptors of " + name + ", falling back to loading its classes", e);
+            }
+        }
+        return names.stream().map(c -> ComponentContainer.toComponent(c, cl)).filter(Optional::isPresent).map(Optional::get);
+    }
+}
@@ -0,0 +1,299 @@
+package atunstall.server.core.impl;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.lang.module.FindException;
+import java.lang.module.InvalidModuleDescriptorException;
+import java.lang.module.ModuleDescriptor;
+import java.lang.module.ModuleReader;
+import java.lang.module.ModuleReference;
+import java.net.URI;
+import java.nio.charset.Charset;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.jar.Attributes;
+import java.util.jar.Manifest;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Reads the modules of component JARs through {@link ZipFile}, which only reads the central directory and the entries it is asked for.
+ * Descriptors follow the rules of {@link java.lang.module.ModuleFinder#of(Path...)}, without reading every entry of automatic modules.
+ */
+final class JarModules {
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final String JAR_SUFFIX = ".jar";
+    private static final String CLASS_SUFFIX = ".class";
+    private static final String MODULE_INFO = "module-info.class";
+    private static final String MANIFEST = "META-INF/MANIFEST.MF";
+    private static final String SERVICES_PREFIX = "META-INF/services/";
+    private static final String VERSIONS_PREFIX = "META-INF/versions/";
+    private static final int MULTI_RELEASE_VERSION = 9;
+    private static final Attributes.Name MULTI_RELEASE = new Attributes.Name("Multi-Release");
+    private static final Attributes.Name AUTOMATIC_MODULE_NAME = new Attributes.Name("Automatic-Module-Name");
+    private static final Pattern DASH_VERSION = Pattern.compile("-(\\d+(\\.|$))");
+    private static final Pattern NON_ALPHANUMERIC = Pattern.compile("[^A-Za-z0-9]");
+    private static final Pattern REPEATING_DOTS = Pattern.compile("\\.{2,}");
+    private static final Set<String> KEYWORDS = Set.of("abstract", "assert", "boolean", "break", "byte", "case", "catch", "char", "class", "const", "continue", "default", "do", "double", "else", "enum", "extends", "final", "finally", "float", "for", "goto", "if", "implements", "import", "instanceof", "int", "interface", "long", "native", "new", "package", "private", "protected", "public", "return", "short", "static", "strictfp", "super", "switch", "synchronized", "this", "throw", "throws", "transient", "try", "void", "volatile", "while", "true", "false", "null", "_");
+
+    private JarModules() {}
+
+    /**
+     * Reads the descriptor of the module in the given JAR.
+     * Explicit modules are read from their module-info.class, automatic modules are derived from the entry names and the manifest.
+     * @param path The path of the JAR.
+     * @param zip The opened JAR.
+     * @return The descriptor of the module.
+     * @throws IOException If an entry could not be read.
+     * @throws FindException If the JAR does not contain a valid module.
+     */
+    static ModuleDescriptor describe(Path path, ZipFile zip) throws IOException {
+        String fileName = path.getFileName().toString();
+        if (!fileName.endsWith(JAR_SUFFIX)) {
+            throw new FindException("Not a JAR: " + path);
+        }
+        try {
+            Attributes attributes = getAttributes(zip);
+            Map<String, ZipEntry> entries = getEntries(zip, attributes);
+            ZipEntry moduleInfo = entries.get(MODULE_INFO);
+            if (moduleInfo != null) {
+                try (InputStream in = zip.getInputStream(moduleInfo)) {
+                    return ModuleDescriptor.read(in, () -> getPackages(entries.keySet(), false));
+                }
+            }
+            return describeAutomatic(fileName.substring(0, fileName.length() - JAR_SUFFIX.length()), zip, entries, attributes);
+        } catch (InvalidModuleDescriptorException | IllegalArgumentException e) {
+            throw new FindException("Error reading module from " + path, e);
+        }
+    }
+
+    private static ModuleDescriptor describeAutomatic(String name, ZipFile zip, Map<String, ZipEntry> entries, Attributes attributes) throws IOException {
+        // The version is parsed from the file name, starting at the first dash followed by a number
+        String version = null;
+        Matcher matcher = DASH_VERSION.matcher(name);
+        if (matcher.find()) {
+            try {
+                version = ModuleDescriptor.Version.parse(name.substring(matcher.start() + 1)).toString();
+            } catch (IllegalArgumentException ignored) {}
+            name = name.substring(0, matcher.start());
+        }
+        String moduleName = attributes == null ? null : attributes.getValue(AUTOMATIC_MODULE_NAME);
+        ModuleDescriptor.Builder builder = ModuleDescriptor.newAutomaticModule(moduleName != null ? moduleName : toModuleName(name));
+        if (version != null) {
+            builder.version(version);
+        }
+        Set<String> packages = getPackages(entries.keySet(), true);
+        builder.packages(packages);
+        List<String> services = entries.keySet().stream().filter(e -> e.startsWith(SERVICES_PREFIX)).map(e -> e.substring(SERVICES_PREFIX.length())).filter(s -> s.indexOf('/') < 0 && isQualifiedName(s)).collect(Collectors.toList());
+        for (String service : services) {
+            List<String> providers = new ArrayList<>();
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(zip.getInputStream(entries.get(SERVICES_PREFIX + service)), UTF_8))) {
+                for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+                    int comment = line.indexOf('#');
+                    String provider = (comment >= 0 ? line.substring(0, comment) : line).trim();
+                    if (!provider.isEmpty()) {
+                        if (!packages.contains(packageOf(provider))) {
+                            throw new InvalidModuleDescriptorException("Provider class " + provider + " not in module");
+                        }
+                        providers.add(provider);
+                    }
+                }
+            }
+            if (!providers.isEmpty()) {
+                builder.provides(service, providers);
+            }
+        }
+        String mainClass = attributes == null ? null : attributes.getValue(Attributes.Name.MAIN_CLASS);
+        if (mainClass != null) {
+            mainClass = mainClass.replace('/', '.');
+            if (isQualifiedName(mainClass) && packages.contains(packageOf(mainClass))) {
+                builder.mainClass(mainClass);
+            }
+        }
+        return builder.build();
+    }
+
+    private static Attributes getAttributes(ZipFile zip) throws IOException {
+        ZipEntry manifest = zip.getEntry(MANIFEST);
+        if (manifest == null) {
+            return null;
+        }
+        try (InputStream in = zip.getInputStream(manifest)) {
+            return new Manifest(in).getMainAttributes();
+        }
+    }
+
+    /**
+     * Maps the names of the files of a JAR to their entries in its central directory.
+     * Entries of multi-release JARs are mapped from their versioned names, using the latest version supported by the runtime.
+     * @param zip The opened JAR.
+     * @param attributes The main attributes of the manifest of the JAR, or null if it has none.
+     * @return The entries of the files of the JAR.
+     */
+    private static Map<String, ZipEntry> getEntries(ZipFile zip, Attributes attributes) {
+        boolean multiRelease = attributes != null && Boolean.parseBoolean(attributes.getValue(MULTI_RELEASE));
+        Map<String, ZipEntry> entries = new HashMap<>();
+        Map<String, Integer> versions = new HashMap<>();
+        int runtimeVersion = Runtime.version().major();
+        zip.stream().filter(e -> !e.isDirectory()).forEach(e -> {
+            String name = e.getName();
+            int version = 0;
+            if (multiRelease && name.startsWith(VERSIONS_PREFIX)) {
+                int index = name.indexOf('/', VERSIONS_PREFIX.length());
+                try {
+                    version = index < 0 ? -1 : Integer.parseInt(name.substring(VERSIONS_PREFIX.length(), index));
+                } catch (NumberFormatException ignored) {
+                    version = -1;
+                }
+                if (version < MULTI_RELEASE_VERSION || version > runtimeVersion) {
+                    return;
+                }
+                name = name.substring(index + 1);
+            }
+            if (versions.getOrDefault(name, -1) < version) {
+                versions.put(name, version);
+                entries.put(name, e);
+            }
+        });
+        return entries;
+    }
+
+    /**
+     * Lists the packages of a JAR from the names of its files.
+     * @param names The names of the files of the JAR.
+     * @param classesOnly True to only count the packages containing classes, as done for automatic modules.
+     * @return The packages of the JAR.
+     */
+    private static Set<String> getPackages(Set<String> names, boolean classesOnly) {
+        Set<String> packages = new HashSet<>();
+        for (String name : names) {
+            if (classesOnly && !name.endsWith(CLASS_SUFFIX)) {
+                continue;
+            }
+            int index = name.lastIndexOf('/');
+            if (index < 0) {
+                if (name.endsWith(CLASS_SUFFIX) && !name.equals(MODULE_INFO)) {
+                    throw new InvalidModuleDescriptorException(name + " found in top-level directory (unnamed package not allowed in module)");
+                }
+            } else {
+                String packageName = name.substring(0, index).replace('/', '.');
+                if (isQualifiedName(packageName)) {
+                    packages.add(packageName);
+                }
+            }
+        }
+        return packages;
+    }
+
+    private static String toModuleName(String name) {
+        name = REPEATING_DOTS.matcher(NON_ALPHANUMERIC.matcher(name).replaceAll(".")).replaceAll(".");
+        int start = name.startsWith(".") ? 1 : 0;
+        int end = name.length() > start && name.endsWith(".") ? name.length() - 1 : name.length();
+        return name.substring(start, end);
+    }
+
+    private static String packageOf(String className) {
+        int index = className.lastIndexOf('.');
+        return index < 0 ? "" : className.substring(0, index);
+    }
+
+    private static boolean isQualifiedName(String name) {
+        for (String part : name.split("\\.", -1)) {
+            if (part.isEmpty() || KEYWORDS.contains(part) || !Character.isJavaIdentifierStart(part.codePointAt(0)) || !part.codePoints().skip(1).allMatch(Character::isJavaIdentifierPart)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Reference to the module of a JAR, only opening the JAR once the module's content is read.
+     * The opened JAR is kept for the lifetime of the reference and shared by the readers it opens.
+     */
+    static class Reference extends ModuleReference {
+        private final Path jar;
+        private ZipFile zip;
+        private Map<String, ZipEntry> entries;
+
+        Reference(ModuleDescriptor descriptor, Path jar) {
+            super(descriptor, jar.toUri());
+            this.jar = jar;
+        }
+
+        @Override
+        public synchronized ModuleReader open() throws IOException {
+            if (zip == null) {
+                ZipFile zip = new ZipFile(jar.toFile());
+                try {
+                    entries = getEntries(zip, getAttributes(zip));
+                } catch (IOException | RuntimeException e) {
+                    zip.close();
+                    throw e;
+                }
+                this.zip = zip;
+            }
+            return new Reader(jar.toUri(), zip, entries);
+        }
+    }
+
+    /**
+     * Reads the content of a module from a shared JAR, closing a reader does not close the JAR.
+     */
+    private static class Reader implements ModuleReader {
+        private final URI jar;
+        private final ZipFile zip;
+        private final Map<String, ZipEntry> entries;
+        private volatile boolean closed;
+
+        private Reader(URI jar, ZipFile zip, Map<String, ZipEntry> entries) {
+            this.jar = jar;
+            this.zip = zip;
+            this.entries = entries;
+        }
+
+        @Override
+        public Optional<URI> find(String name) throws IOException {
+            return getEntry(name).map(e -> URI.create("jar:" + jar + "!/" + name));
+        }
+
+        @Override
+        public Optional<InputStream> open(String name) throws IOException {
+            Optional<ZipEntry> entry = getEntry(name);
+            return entry.isPresent() ? Optional.of(zip.getInputStream(entry.get())) : Optional.empty();
+        }
+
+        @Override
+        public Stream<String> list() throws IOException {
+            checkOpen();
+            return entries.keySet().stream();
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+        }
+
+        private Optional<ZipEntry> getEntry(String name) throws IOException {
+            checkOpen();
+            return Optional.ofNullable(entries.get(name));
+        }
+
+        private void checkOpen() throws IOException {
+            if (closed) {
+                throw new IOException("ModuleReader is closed");
+            }
+        }
+    }
+}
@@ -1,38 +1,52 @@
 package atunstall.server.core.impl;
 
 import atunstall.server.core.api.logging.Level;
-import atunstall.server.core.api.logging.LogMessage;
 import atunstall.server.core.api.logging.Logger;
 import atunstall.server.core.impl.container.ComponentContainer;
 import atunstall.server.core.impl.dependency.DependencyTree;
+import atunstall.server.core.impl.event.FlightRecorderEvents;
+import atunstall.server.core.impl.logging.BufferedAppender;
 import atunstall.server.core.impl.logging.RootLogger;
 
 import java.io.*;
 import java.lang.module.Configuration;
+import java.lang.module.FindException;
 import java.lang.module.ModuleDescriptor;
 import java.lang.module.ModuleFinder;
 import java.lang.module.ModuleReference;
 import java.net.URL;
 import java.net.URLClassLoader;
 import java.nio.charset.Charset;
-import java.nio.file.FileSystem;
 import java.nio.file.*;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.atomic.AtomicLong;
-import java.util.function.Consumer;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
-import java.util.stream.StreamSupport;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
 
-class Start implements Consumer<LogMessage> {
+class Start {
     private static final Path COMPONENTS_ROOT = Paths.get("components");
+    private static final Path COMPONENTS_INDEX = Paths.get("components.index");
+    private static final Path STARTUP_REPORT = Paths.get("startup-report.json");
     private static final Charset UTF_8 = Charset.forName("UTF-8");
 
     private static final String SERVICES_FILE = "services.txt";
     private static final String MODULES_FILE = "modules.txt";
+    private static final String SERVICES_DESCRIPTOR = "services.bin";
+    private static final String MODULES_DESCRIPTOR = "modules.bin";
+
+    private static final String PARALLELISM_PROPERTY = "atunstall.server.core.parallelism";
+    private static final String LAZY_PROPERTY = "atunstall.server.core.lazy";
 
     private final Logger logger;
 
@@ -43,19 +57,59 @@ class Start implements Consumer<LogMessage> {
     public static void main(String[] args) {
         RootLogger rootLogger = new RootLogger();
         Start instance = new Start(rootLogger.getChild("Core"));
-        rootLogger.addListener(instance, level -> true);
+        BufferedAppender appender = BufferedAppender.toConsole();
+        rootLogger.addListener(appender, level -> true);
+        // Also covers System.exit calls from modules, terminating twice has no effect
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            rootLogger.terminate();
+            appender.close();
+        }, "Log shutdown"));
         ComponentClassLoader cl = instance.new ComponentClassLoader(Start.class.getClassLoader());
-        DependencyTree dependencies = new DependencyTree(instance.logger, Stream.concat(instance.loadJars(cl), instance.loadClasspath()).distinct().map(c -> ComponentContainer.toComponent(c, cl)).filter(Optional::isPresent).map(Optional::get));
+        StartupReport report = new StartupReport();
+        long phaseStart = System.nanoTime();
+        List<ComponentSource> sources = instance.loadJars(cl).collect(Collectors.toCollection(ArrayList::new));
+        report.addPhase("JAR scan", System.nanoTime() - phaseStart);
+        phaseStart = System.nanoTime();
+        instance.loadClasspath().forEach(sources::add);
+        report.addPhase("classpath scan", System.nanoTime() - phaseStart);
+        phaseStart = System.nanoTime();
+        Set<String> names = new HashSet<>();
+        List<ComponentContainer> components = sources.stream().flatMap(s -> s.toComponents(cl, instance.logger)).filter(c -> names.add(c.getName())).collect(Collectors.toList());
+        report.addPhase("component loading", System.nanoTime() - phaseStart);
+        DependencyTree dependencies = new DependencyTree(instance.logger, components.stream(), Boolean.getBoolean(LAZY_PROPERTY));
+        report.addPhase("graph build", dependencies.getBuildTime());
+        report.addPhase("cycle resolution", dependencies.getResolutionTime());
         dependencies.getModuleNode(RootLogger.class).orElseThrow(IllegalStateException::new).setInstance(rootLogger);
+        int parallelism = Integer.getInteger(PARALLELISM_PROPERTY, 1);
         long start = System.nanoTime();
-        dependencies.instantiateModules();
+        if (parallelism > 1) {
+            // Worker threads are not daemons so that threads started by module constructors are not daemons either
+            ExecutorService executor = Executors.newFixedThreadPool(parallelism);
+            try {
+                dependencies.instantiateModules(executor);
+            } finally {
+                executor.shutdown();
+            }
+        } else {
+            dependencies.instantiateModules();
+        }
         long end = System.nanoTime();
-        instance.logger.log(Level.INFO, String.format("Took %.3f milliseconds", ((double) end - start) / 1000000D));
+        instance.logger.log(Level.INFO, "Took %.3f milliseconds", ((double) end - start) / 1000000D);
+        report.addPhase("instantiation", end - start);
+        // Classes are loaded lazily, so this overlaps with the other phases
+        report.addPhase("class loading", ComponentContainer.getClassLoadingTime());
+        report.addModules(dependencies.getConstructionTimes());
+        report.log(instance.logger);
+        try {
+            report.write(STARTUP_REPORT);
+        } catch (IOException e) {
+            instance.logger.log(Level.WARNING, "Error while writing startup report " + STARTUP_REPORT, e);
+        }
         AtomicLong count = new AtomicLong();
         do {
             count.set(0L);
             Stream<Thread> threads = Thread.getAllStackTraces().keySet().stream().filter(t -> Thread.currentThread().getThreadGroup().parentOf(t.getThreadGroup())).filter(t -> !t.isDaemon() && t != Thread.currentThread())/*.filter(t -> Thread.State.RUNNABLE.equals(t.getState()) || Thread.State.TIMED_WAITING.equals(t.getState()))*/.peek(t -> count.incrementAndGet());
-            instance.logger.log(Level.DEBUG, "Waiting for " + count.longValue() + " threads");
+            instance.logger.log(Level.DEBUG, "Waiting for %d threads", count.longValue());
             threads.forEach(t -> {
                 try {
                     t.join();
@@ -63,62 +117,100 @@ class Start implements Consumer<LogMessage> {
             });
         } while (count.longValue() > 0L);
         rootLogger.terminate();
+        appender.close();
     }
 
-    @Override
-    public void accept(LogMessage message) {
-        PrintStream target;
-        switch (message.getLevel()) {
-            case ERROR:
-                target = System.err;
-                break;
-            default:
-                target = System.out;
-                break;
-        }
-        target.printf("[%s] %s | %s\n", message.getLogger().getFullName(), message.getLevel().toString(), message.getMessage());
-        message.getThrowable().ifPresent(Throwable::printStackTrace);
-    }
-
-    private Stream<String> loadClasspath() {
+    private Stream<ComponentSource> loadClasspath() {
         logger.log(Level.INFO, "Scanning classpath for components");
-        return Stream.of(SERVICES_FILE, MODULES_FILE).flatMap(this::getResources).flatMap(this::parse);
+        return ModuleLayer.boot().modules().stream().map(m -> {
+            Set<String> names = Stream.of(SERVICES_FILE, MODULES_FILE).<InputStream>map(r -> getResourceAsStream(m, r)).filter(Objects::nonNull).flatMap(this::parse).collect(Collectors.toSet());
+            List<byte[]> descriptors = Stream.of(SERVICES_DESCRIPTOR, MODULES_DESCRIPTOR).<InputStream>map(r -> getResourceAsStream(m, r)).filter(Objects::nonNull).map(this::read).filter(Objects::nonNull).collect(Collectors.toList());
+            return new ComponentSource(m.getName(), m.getDescriptor(), names, descriptors);
+        }).filter(s -> s.getNames().size() > 0 || s.getDescriptors().size() > 0);
     }
 
-    private Stream<String> loadJars(ComponentClassLoader cl) {
+    private Stream<ComponentSource> loadJars(ComponentClassLoader cl) {
         logger.log(Level.INFO, "Scanning \"" + Start.COMPONENTS_ROOT.toString() + "\" directory for JARs");
         try {
             Files.createDirectories(Start.COMPONENTS_ROOT);
-            Set<Path> files = Files.walk(Start.COMPONENTS_ROOT).collect(Collectors.toSet());
-            ModuleFinder finder = ModuleFinder.of(files.toArray(new Path[0]));
-            Configuration configuration = ModuleLayer.boot().configuration().resolveAndBind(finder, ModuleFinder.ofSystem(), finder.findAll().stream().map(ModuleReference::descriptor).map(ModuleDescriptor::name).collect(Collectors.toList()));
+            List<Path> jars = Files.walk(Start.COMPONENTS_ROOT).filter(Files::isRegularFile).sorted().collect(Collectors.toList());
+            ComponentIndex index = ComponentIndex.load(logger, COMPONENTS_INDEX);
+            index.retain(jars);
+            List<Optional<ComponentSource>> loaded = jars.parallelStream().map(c -> loadJar(c, index)).collect(Collectors.toList());
+            List<ComponentSource> sources = new ArrayList<>();
+            Map<String, ModuleReference> modules = new HashMap<>();
+            for (int i = 0; i < jars.size(); i++) {
+                if (loaded.get(i).isPresent()) {
+                    ModuleDescriptor module = loaded.get(i).get().getModule();
+                    if (modules.containsKey(module.name())) {
+                        logger.log(Level.ERROR, "Ignoring JAR at %s, module %s is already provided by %s", jars.get(i), module.name(), modules.get(module.name()).location().orElse(null));
+                        continue;
+                    }
+                    modules.put(module.name(), new JarModules.Reference(module, jars.get(i)));
+                    cl.addURL(jars.get(i).toUri().toURL());
+                    sources.add(loaded.get(i).get());
+                }
+            }
+            index.save();
+            // The layer is resolved from the indexed module descriptors, so that JARs are only opened when they are scanned
+            ModuleFinder finder = new JarModuleFinder(modules);
+            Configuration configuration = ModuleLayer.boot().configuration().resolveAndBind(finder, ModuleFinder.ofSystem(), modules.keySet());
             ModuleLayer.defineModules(configuration, List.of(ModuleLayer.boot()), s -> cl);
-            return files.stream().filter(Files::isRegularFile).flatMap(c -> loadJar(c, cl)).collect(Collectors.toSet()).stream();
+            return sources.stream();
         } catch (IOException e) {
             logger.log(Level.ERROR, "Error while scanning " + Start.COMPONENTS_ROOT, e);
         }
         return Stream.empty();
     }
 
-    private Stream<String> loadJar(Path path, ComponentClassLoader cl) {
-        logger.log(Level.INFO, "Loading JAR at " + path.toString());
-        try (FileSystem fs = FileSystems.newFileSystem(path, null)) {
-            Set<String> components = StreamSupport.stream(fs.getRootDirectories().spliterator(), false).flatMap(p -> Stream.of(p.resolve(SERVICES_FILE), p.resolve(MODULES_FILE))).filter(Files::isRegularFile).flatMap(this::parse).collect(Collectors.toSet());
-            cl.addURL(path.toUri().toURL());
-            return components.stream();
+    private Optional<ComponentSource> loadJar(Path path, ComponentIndex index) {
+        long start = System.nanoTime();
+        try {
+            Optional<ComponentSource> indexed = index.getComponents(path);
+            if (indexed.isPresent()) {
+                logger.log(Level.DEBUG, "Using indexed components of JAR at %s", path);
+                jarLoaded(path, true, start);
+                return indexed;
+            }
         } catch (IOException e) {
+            logger.log(Level.WARNING, "Error while checking the index of " + path, e);
+        }
+        logger.log(Level.INFO, "Loading JAR at " + path.toString());
+        // Only reads the central directory, the entries listing the components and the module descriptor or manifest
+        try (ZipFile zip = new ZipFile(path.toFile())) {
+            Set<String> names = new HashSet<>();
+            for (String file : new String[] {SERVICES_FILE, MODULES_FILE}) {
+                ZipEntry entry = zip.getEntry(file);
+                if (entry != null) {
+                    try (BufferedReader reader = new BufferedReader(new InputStreamReader(zip.getInputStream(entry), UTF_8))) {
+                        reader.lines().forEach(names::add);
+                    }
+                }
+            }
+            List<byte[]> descriptors = new ArrayList<>();
+            for (String file : new String[] {SERVICES_DESCRIPTOR, MODULES_DESCRIPTOR}) {
+                ZipEntry entry = zip.getEntry(file);
+                if (entry != null) {
+                    try (InputStream in = zip.getInputStream(entry)) {
+                        descriptors.add(in.readAllBytes());
+                    }
+                }
+            }
+            ModuleDescriptor module = JarModules.describe(path, zip);
+            ComponentSource components = new ComponentSource(path.toString(), module, names, descriptors);
+            index.putComponents(path, components);
+            jarLoaded(path, false, start);
+            return Optional.of(components);
+        } catch (IOException | FindException e) {
             logger.log(Level.WARNING, "Error while loading " + path, e);
         }
-        return Stream.empty();
+        return Optional.empty();
     }
 
-    private Stream<String> parse(Path path) {
-        try {
-            return Files.lines(path);
-        } catch (IOException e) {
-            logger.log(Level.WARNING, "Error while reading " + path, e);
+    private static void jarLoaded(Path path, boolean indexed, long start) {
+        if (FlightRecorderEvents.JAR_LOADING.isEnabled()) {
+            FlightRecorderEvents.JAR_LOADING.commit(path.toString(), indexed, System.nanoTime() - start);
         }
-        return Stream.empty();
     }
 
     private Stream<String> parse(InputStream inputStream) {
@@ -130,8 +222,13 @@ class Start implements Consumer<LogMessage> {
         return Stream.empty();
     }
 
-    private Stream<InputStream> getResources(String resource) {
-        return ModuleLayer.boot().modules().stream().map(m -> getResourceAsStream(m, resource)).filter(Objects::nonNull);
+    private byte[] read(InputStream inputStream) {
+        try (InputStream in = inputStream) {
+            return in.readAllBytes();
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Error while scanning classpath", e);
+        }
+        return null;
     }
 
     private InputStream getResourceAsStream(Module module, String resource) {
@@ -143,6 +240,27 @@ class Start implements Consumer<LogMessage> {
         return null;
     }
 
+    /**
+     * Finds the modules of the scanned JARs using their known descriptors.
+     */
+    private static class JarModuleFinder implements ModuleFinder {
+        private final Map<String, ModuleReference> modules;
+
+        private JarModuleFinder(Map<String, ModuleReference> modules) {
+            this.modules = modules;
+        }
+
+        @Override
+        public Optional<ModuleReference> find(String name) {
+            return Optional.ofNullable(modules.get(name));
+        }
+
+        @Override
+        public Set<ModuleReference> findAll() {
+            return new HashSet<>(modules.values());
+        }
+    }
+
     private class ComponentClassLoader extends URLClassLoader {
         ComponentClassLoader(ClassLoader parent) {
             super(new URL[0], parent);
@@ -0,0 +1,96 @@
+package atunstall.server.core.impl;
+
+import atunstall.server.core.api.logging.Level;
+import atunstall.server.core.api.logging.Logger;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Timings of the startup phases and of the construction of each module.
+ * The report is written to a JSON file and summarized in the log, with the slowest modules first.
+ */
+class StartupReport {
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final int SUMMARY_MODULES = 10;
+
+    private final Map<String, Long> phases;
+    private final Map<String, Long> modules;
+
+    StartupReport() {
+        phases = new LinkedHashMap<>();
+        modules = new HashMap<>();
+    }
+
+    /**
+     * Records the duration of a startup phase.
+     * @param name The name of the phase.
+     * @param time The duration of the phase in nanoseconds.
+     */
+    void addPhase(String name, long time) {
+        phases.put(name, time);
+    }
+
+    /**
+     * Records the construction times of modules.
+     * @param times The construction time of each module in nanoseconds, by module name.
+     */
+    void addModules(Map<String, Long> times) {
+        modules.putAll(times);
+    }
+
+    /**
+     * Logs the phase timings, then the slowest modules at {@link Level#INFO} and the remaining modules at {@link Level#DEBUG}.
+     * @param logger The logger to log the summary with.
+     */
+    void log(Logger logger) {
+        phases.forEach((name, time) -> logger.log(Level.INFO, "Startup phase %s took %.3f milliseconds", name, time / 1000000D));
+        List<Map.Entry<String, Long>> sorted = getSortedModules();
+        for (int index = 0; index < sorted.size(); index++) {
+            Map.Entry<String, Long> entry = sorted.get(index);
+            logger.log(index < SUMMARY_MODULES ? Level.INFO : Level.DEBUG, "Module %s took %.3f milliseconds to construct", entry.getKey(), entry.getValue() / 1000000D);
+        }
+    }
+
+    /**
+     * Writes this report to the given file as JSON, with the durations in nanoseconds and the modules sorted from the slowest.
+     * @param file The file to write to.
+     * @throws IOException If an I/O error occurs while writing the file.
+     */
+    void write(Path file) throws IOException {
+        try (BufferedWriter writer = Files.newBufferedWriter(file, UTF_8)) {
+            writer.append("{\n  \"phases\": {");
+            String separator = "\n";
+            for (Map.Entry<String, Long> entry : phases.entrySet()) {
+                writer.append(separator).append("    ").append(quote(entry.getKey())).append(": ").append(String.valueOf(entry.getValue()));
+                separator = ",\n";
+            }
+            writer.append("\n  },\n  \"modules\": [");
+            separator = "\n";
+            for (Map.Entry<String, Long> entry : getSortedModules()) {
+                writer.append(separator).append("    {\"name\": ").append(quote(entry.getKey())).append(", \"construction\": ").append(String.valueOf(entry.getValue())).append('}');
+                separator = ",\n";
+            }
+            writer.append("\n  ]\n}\n");
+        }
+    }
+
+    private List<Map.Entry<String, Long>> getSortedModules() {
+        List<Map.Entry<String, Long>> result = new ArrayList<>(modules.entrySet());
+        result.sort(Map.Entry.<String, Long>comparingByValue(Comparator.reverseOrder()).thenComparing(Map.Entry.comparingByKey()));
+        return result;
+    }
+
+    private static String quote(String value) {
+        return '"' + value.replace("\\", "\\\\").replace("\"", "\\\"") + '"';
+    }
+}
@@ -4,28 +4,83 @@ import atunstall.server.core.api.Module;
 import atunstall.server.core.api.Unique;
 import atunstall.server.core.api.Version;
 
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
 import java.lang.ref.WeakReference;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
 
 public class ComponentContainer {
     private static final Map<Class<?>, WeakReference<ComponentContainer>> CACHE = new HashMap<>();
+    private static final int DESCRIPTOR_MAGIC = 0x4D534344;
+    private static final int DESCRIPTOR_FORMAT_VERSION = 1;
+    private static final int DESCRIPTOR_VERSION = 0;
+    private static final int DESCRIPTOR_MODULE = 1;
+    private static final LongAdder CLASS_LOADING_TIME = new LongAdder();
 
-    private final Class<?> component;
+    private final String name;
+    private final ClassLoader classLoader;
+    private volatile Class<?> component;
 
     ComponentContainer(Class<?> component) {
+        this(component.getName(), component.getClassLoader());
         this.component = component;
     }
 
+    ComponentContainer(String name, ClassLoader classLoader) {
+        this.name = name;
+        this.classLoader = classLoader;
+    }
+
     public static Optional<ComponentContainer> toComponent(String className, ClassLoader cl) {
-        try {
-            return toComponent(Class.forName(className, true, cl));
-        } catch (ClassNotFoundException e) {
-            NoClassDefFoundError error = new NoClassDefFoundError("could not find component class");
-            error.addSuppressed(e);
-            throw error;
+        return toComponent(loadClass(className, cl));
+    }
+
+    /**
+     * Reads the components stored in a binary descriptor generated by the annotation processors.
+     * The classes of the components are only loaded once they are needed.
+     * @param descriptor The content of the descriptor.
+     * @param cl The class loader to load the components' classes with.
+     * @return The components stored in the descriptor.
+     * @throws IOException If the descriptor is malformed.
+     */
+    public static List<ComponentContainer> toComponents(byte[] descriptor, ClassLoader cl) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(descriptor));
+        if (in.readInt() != DESCRIPTOR_MAGIC || in.readUnsignedByte() != DESCRIPTOR_FORMAT_VERSION) {
+            throw new IOException("unsupported component descriptor");
+        }
+        int count = in.readInt();
+        List<ComponentContainer> result = new ArrayList<>(count);
+        for (int index = 0; index < count; index++) {
+            int kind = in.readUnsignedByte();
+            String name = in.readUTF();
+            switch (kind) {
+                case DESCRIPTOR_VERSION:
+                    result.add(new VersionContainer(name, cl, in.readInt(), in.readInt(), in.readBoolean()));
+                    break;
+                case DESCRIPTOR_MODULE:
+                    Set<String> implemented = new HashSet<>();
+                    for (int remaining = in.readUnsignedShort(); remaining > 0; remaining--) {
+                        implemented.add(in.readUTF());
+                    }
+                    List<Dependency> dependencies = new ArrayList<>();
+                    for (int remaining = in.readUnsignedShort(); remaining > 0; remaining--) {
+                        dependencies.add(new Dependency(in.readUTF(), in.readInt(), in.readInt(), in.readBoolean()));
+                    }
+                    result.add(new ModuleContainer(name, cl, implemented, dependencies));
+                    break;
+                default:
+                    throw new IOException("unknown component kind " + kind);
+            }
         }
+        return result;
     }
 
     private static Optional<ComponentContainer> toComponent(Class<?> type) {
@@ -35,11 +90,11 @@ public class ComponentContainer {
         }
         Version version = type.getAnnotation(Version.class);
         if (version != null) {
-            candidate = new VersionContainer(type, version, type.getAnnotation(Unique.class) != null);
+            candidate = new VersionContainer(type, version.major(), version.minor(), type.getAnnotation(Unique.class) != null);
         }
         Module module = type.getAnnotation(Module.class);
         if (module != null) {
-            candidate = new ModuleContainer(type, module);
+            candidate = new ModuleContainer(type);
         }
         if (candidate != null) {
             CACHE.put(type, new WeakReference<>(candidate));
@@ -48,7 +103,46 @@ public class ComponentContainer {
         return Optional.empty();
     }
 
+    static Class<?> loadClass(String className, ClassLoader cl) {
+        long start = System.nanoTime();
+        try {
+            return Class.forName(className, true, cl);
+        } catch (ClassNotFoundException e) {
+            NoClassDefFoundError error = new NoClassDefFoundError("could not find component class");
+            error.addSuppressed(e);
+            throw error;
+        } finally {
+            CLASS_LOADING_TIME.add(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Returns the total time spent loading and initializing component and module factory classes.
+     * Classes are loaded lazily, so this includes the classes loaded while building the dependency tree and instantiating modules.
+     * @return The class loading time in nanoseconds.
+     */
+    public static long getClassLoadingTime() {
+        return CLASS_LOADING_TIME.sum();
+    }
+
+    static void addClassLoadingTime(long time) {
+        CLASS_LOADING_TIME.add(time);
+    }
+
+    /**
+     * Returns the binary name of the component.
+     * Unlike {@link #getComponent()}, this does not load the component's class.
+     * @return The name of the component.
+     */
+    public String getName() {
+        return name;
+    }
+
     public Class<?> getComponent() {
-        return component;
+        Class<?> result = component;
+        if (result == null) {
+            component = result = loadClass(name, classLoader);
+        }
+        return result;
     }
 }
@@ -0,0 +1,39 @@
+package atunstall.server.core.impl.container;
+
+/**
+ * Describes a parameter of a module's constructor.
+ */
+public class Dependency {
+    private final String type;
+    private final int major;
+    private final int minor;
+    private final boolean supplier;
+
+    Dependency(String type, int major, int minor, boolean supplier) {
+        this.type = type;
+        this.major = major;
+        this.minor = minor;
+        this.supplier = supplier;
+    }
+
+    /**
+     * Returns the binary name of the injected interface.
+     * If the parameter is a {@link java.util.function.Supplier}, then this is the type supplied by it.
+     * @return The name of the dependency's type.
+     */
+    public String getType() {
+        return type;
+    }
+
+    public int getMajor() {
+        return major;
+    }
+
+    public int getMinor() {
+        return minor;
+    }
+
+    public boolean isSupplier() {
+        return supplier;
+    }
+}
@@ -1,16 +1,107 @@
 package atunstall.server.core.impl.container;
 
 import atunstall.server.core.api.Module;
+import atunstall.server.core.api.ModuleFactory;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
 
 public class ModuleContainer extends ComponentContainer {
-    private final Module module;
+    private volatile Set<String> implemented;
+    private volatile List<Dependency> dependencies;
+    private volatile ModuleFactory<?> factory;
 
-    ModuleContainer(Class<?> component, Module module) {
+    ModuleContainer(Class<?> component) {
         super(component);
-        this.module = module;
+    }
+
+    ModuleContainer(String name, ClassLoader classLoader, Set<String> implemented, List<Dependency> dependencies) {
+        super(name, classLoader);
+        this.implemented = Collections.unmodifiableSet(implemented);
+        this.dependencies = Collections.unmodifiableList(dependencies);
     }
 
     public Module getModule() {
-        return module;
+        return getComponent().getAnnotation(Module.class);
+    }
+
+    /**
+     * Returns the binary names of the types this module can be used as.
+     * This contains at least all the {@link atunstall.server.core.api.Version}-annotated interfaces implemented by the module.
+     * @return The names of the implemented types.
+     */
+    public Set<String> getImplemented() {
+        Set<String> result = implemented;
+        if (result == null) {
+            result = new HashSet<>();
+            Deque<Class<?>> processing = new ArrayDeque<>();
+            processing.add(getComponent());
+            while (processing.size() > 0) {
+                Class<?> current = processing.pop();
+                result.add(current.getName());
+                Class<?> superclass = current.getSuperclass();
+                if (superclass != null) {
+                    processing.add(superclass);
+                }
+                processing.addAll(Arrays.asList(current.getInterfaces()));
+            }
+            implemented = result = Collections.unmodifiableSet(result);
+        }
+        return result;
+    }
+
+    /**
+     * Returns the parameters of this module's constructor, in order.
+     * @return The dependencies of this module.
+     */
+    public List<Dependency> getDependencies() {
+        List<Dependency> result = dependencies;
+        if (result == null) {
+            ModuleFactory<?> factory = getFactory();
+            result = new ArrayList<>(factory.getDependencyCount());
+            for (int index = 0; index < factory.getDependencyCount(); index++) {
+                result.add(new Dependency(factory.getDependencyType(index).getName(), factory.getMajorVersion(index), factory.getMinorVersion(index), factory.isSupplier(index)));
+            }
+            dependencies = result = Collections.unmodifiableList(result);
+        }
+        return result;
+    }
+
+    /**
+     * Returns the factory used to create instances of this module.
+     * This is the factory generated at compile time if it exists, or a reflection-based factory otherwise.
+     * @return The factory of this module.
+     */
+    public ModuleFactory<?> getFactory() {
+        ModuleFactory<?> result = factory;
+        if (result == null) {
+            factory = result = toFactory(getComponent());
+        }
+        return result;
+    }
+
+    private static ModuleFactory<?> toFactory(Class<?> type) {
+        long start = System.nanoTime();
+        try {
+            Class<?> factory = Class.forName(type.getName() + ModuleFactory.SUFFIX, true, type.getClassLoader());
+            if (ModuleFactory.class.isAssignableFrom(factory)) {
+                return (ModuleFactory<?>) factory.getConstructor().newInstance();
+            }
+        } catch (ClassNotFoundException ignored) {
+            // The module was compiled without the annotation processor
+        } catch (ReflectiveOperationException e) {
+            NoClassDefFoundError error = new NoClassDefFoundError("could not instantiate module factory");
+            error.addSuppressed(e);
+            throw error;
+        } finally {
+            addClassLoadingTime(System.nanoTime() - start);
+        }
+        return new ReflectiveModuleFactory<>(type);
     }
 }
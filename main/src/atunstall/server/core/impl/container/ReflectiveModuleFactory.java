@@ -0,0 +1,99 @@
+package atunstall.server.core.impl.container;
+
+import atunstall.server.core.api.ModuleFactory;
+import atunstall.server.core.api.Version;
+
+import java.lang.annotation.Annotation;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.lang.reflect.UndeclaredThrowableException;
+import java.util.function.Supplier;
+
+/**
+ * Fallback factory used for modules that were compiled without a generated {@link ModuleFactory}.
+ * @param <T> The type of the module.
+ */
+class ReflectiveModuleFactory<T> implements ModuleFactory<T> {
+    private final Class<T> module;
+    private final MethodHandle constructor;
+    private final Class<?>[] types;
+    private final boolean[] suppliers;
+    private final Version[] versions;
+
+    ReflectiveModuleFactory(Class<T> module) {
+        this.module = module;
+        Constructor<?> constructor = module.getConstructors()[0];
+        try {
+            ReflectiveModuleFactory.class.getModule().addReads(module.getModule());
+            this.constructor = MethodHandles.lookup().unreflectConstructor(constructor).asSpreader(Object[].class, constructor.getParameterCount()).asType(MethodType.methodType(Object.class, Object[].class));
+        } catch (IllegalAccessException e) {
+            IllegalAccessError error = new IllegalAccessError("could not access module constructor");
+            error.addSuppressed(e);
+            throw error;
+        }
+        Annotation[][] annotations = constructor.getParameterAnnotations();
+        Type[] parameters = constructor.getGenericParameterTypes();
+        types = new Class<?>[parameters.length];
+        suppliers = new boolean[parameters.length];
+        versions = new Version[parameters.length];
+        for (int index = 0; index < parameters.length; index++) {
+            Type parameter = parameters[index];
+            if (parameter instanceof ParameterizedType && ((ParameterizedType) parameter).getRawType() == Supplier.class) {
+                suppliers[index] = true;
+                parameter = ((ParameterizedType) parameter).getActualTypeArguments()[0];
+            }
+            types[index] = (Class<?>) (parameter instanceof ParameterizedType ? ((ParameterizedType) parameter).getRawType() : parameter);
+            for (Annotation annotation : annotations[index]) {
+                if (annotation instanceof Version) {
+                    versions[index] = (Version) annotation;
+                    break;
+                }
+            }
+        }
+    }
+
+    @Override
+    public Class<T> getModule() {
+        return module;
+    }
+
+    @Override
+    public int getDependencyCount() {
+        return types.length;
+    }
+
+    @Override
+    public Class<?> getDependencyType(int index) {
+        return types[index];
+    }
+
+    @Override
+    public boolean isSupplier(int index) {
+        return suppliers[index];
+    }
+
+    @Override
+    public int getMajorVersion(int index) {
+        return versions[index].major();
+    }
+
+    @Override
+    public int getMinorVersion(int index) {
+        return versions[index].minor();
+    }
+
+    @Override
+    public T create(Object[] arguments) throws Exception {
+        try {
+            return module.cast((Object) constructor.invokeExact(arguments));
+        } catch (Exception | Error e) {
+            throw e;
+        } catch (Throwable t) {
+            throw new UndeclaredThrowableException(t);
+        }
+    }
+}
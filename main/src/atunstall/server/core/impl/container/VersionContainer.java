@@ -1,19 +1,30 @@
 package atunstall.server.core.impl.container;
 
-import atunstall.server.core.api.Version;
-
 public class VersionContainer extends ComponentContainer {
-    private final Version version;
+    private final int major;
+    private final int minor;
     private final boolean unique;
 
-    VersionContainer(Class<?> component, Version version, boolean unique) {
+    VersionContainer(Class<?> component, int major, int minor, boolean unique) {
         super(component);
-        this.version = version;
+        this.major = major;
+        this.minor = minor;
+        this.unique = unique;
+    }
+
+    VersionContainer(String name, ClassLoader classLoader, int major, int minor, boolean unique) {
+        super(name, classLoader);
+        this.major = major;
+        this.minor = minor;
         this.unique = unique;
     }
 
-    public Version getVersion() {
-        return version;
+    public int getMajor() {
+        return major;
+    }
+
+    public int getMinor() {
+        return minor;
     }
 
     public boolean isUnique() {
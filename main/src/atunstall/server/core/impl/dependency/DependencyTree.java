@@ -1,132 +1,423 @@
 package atunstall.server.core.impl.dependency;
 
-import atunstall.server.core.api.Version;
 import atunstall.server.core.api.logging.Level;
 import atunstall.server.core.api.logging.Logger;
 import atunstall.server.core.impl.container.ComponentContainer;
+import atunstall.server.core.impl.container.Dependency;
 import atunstall.server.core.impl.container.ModuleContainer;
 import atunstall.server.core.impl.container.VersionContainer;
+import atunstall.server.core.impl.event.FlightRecorderEvents;
 
 import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.Deque;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 public class DependencyTree {
     final Logger logger;
-    private final Map<Class<?>, ModuleNode> moduleNodes;
-    private final Map<Class<?>, VersionNode> versionNodes;
+    private final boolean lazy;
+    private final Map<String, ModuleNode> moduleNodes;
+    private final Map<String, VersionNode> versionNodes;
+    private final Map<String, Set<ModuleNode>> implementations;
+    private final long buildTime;
+    private final long resolutionTime;
 
     public DependencyTree(Logger logger, Stream<ComponentContainer> components) {
+        this(logger, components, false);
+    }
+
+    /**
+     * Builds the dependency tree of the given components.
+     * In lazy mode, only the modules that don't implement any versioned interface are instantiated by {@link #instantiateModules()}, since no other module can depend on them.
+     * Other modules are injected as handles that instantiate them on first use, or can be instantiated explicitly through {@link ModuleNode#getInstance()}.
+     * @param logger The logger to log messages to.
+     * @param components The components to build the tree of.
+     * @param lazy Whether modules should only be instantiated once they are used.
+     */
+    public DependencyTree(Logger logger, Stream<ComponentContainer> components, boolean lazy) {
         this.logger = logger;
+        this.lazy = lazy;
         logger.log(Level.INFO, "Building the dependency tree");
         moduleNodes = new HashMap<>();
         versionNodes = new HashMap<>();
+        implementations = new HashMap<>();
+        long start = System.nanoTime();
         components.filter(c -> c instanceof ModuleContainer || c instanceof VersionContainer).forEach(this::toNode);
         if (moduleNodes.values().stream().anyMatch(this::checkDependencies)) {
             logger.log(Level.ERROR, "Shutting down due to mismatching dependency versions");
             System.exit(1);
         }
-        Set<Node> visited = new HashSet<>();
-        moduleNodes.values().forEach(node -> {
-            List<Node> parents = new ArrayList<>();
-            Deque<Iterator<? extends Node>> iterators = new ArrayDeque<>();
-            parents.add(node);
-            visited.add(node);
-            iterators.add(node.getDependencies().keySet().iterator());
-            boolean removeParent = false;
-            while (iterators.size() > 0) {
-                Iterator<? extends Node> iterator = iterators.peekLast();
+        long resolutionStart = System.nanoTime();
+        buildTime = resolutionStart - start;
+        List<Set<Node>> cycles = getStronglyConnectedComponents();
+        logger.log(Level.DEBUG, "Resolving %d cyclic dependency groups", cycles.size());
+        cycles.forEach(this::breakCycles);
+        versionNodes.values().stream().filter(n -> n.getPreferredImplementation() == null).forEach(node -> node.setPreferredImplementation(node.getImplementations().stream().findAny().orElse(null)));
+        resolutionTime = System.nanoTime() - resolutionStart;
+        if (FlightRecorderEvents.DEPENDENCY_RESOLUTION.isEnabled()) {
+            FlightRecorderEvents.DEPENDENCY_RESOLUTION.commit(moduleNodes.size(), versionNodes.size(), cycles.size(), buildTime, resolutionTime);
+        }
+    }
+
+    /**
+     * Instantiates all modules in dependency order.
+     * Only the modules no other module depends on are instantiated directly, along with the unique instances they need, since every other module is created by its dependents.
+     * Modules that already have an instance, either set externally or created while instantiating another module, are skipped.
+     * In lazy mode, only the modules that don't implement any versioned interface are instantiated.
+     */
+    public void instantiateModules() {
+        Set<ModuleNode> injected = getInjectedModules();
+        getLevels().forEach(level -> getInstantiations(level, injected).forEach(Supplier::get));
+    }
+
+    /**
+     * Instantiates all modules using the given executor.
+     * Modules are grouped into levels such that every module only depends on modules from lower levels.
+     * The modules of a level that no other module depends on and the unique instances of the level are instantiated concurrently once the previous level has been instantiated.
+     * Every other module is created by its dependents.
+     * In lazy mode, only the modules that don't implement any versioned interface are instantiated.
+     * @param executor The executor to instantiate the modules with.
+     */
+    public void instantiateModules(ExecutorService executor) {
+        List<List<ModuleNode>> levels = getLevels();
+        logger.log(Level.DEBUG, "Instantiating %d modules in %d levels", moduleNodes.size(), levels.size());
+        Set<ModuleNode> injected = getInjectedModules();
+        for (List<ModuleNode> level : levels) {
+            List<Callable<Object>> tasks = getInstantiations(level, injected).map(instantiation -> (Callable<Object>) instantiation::get).collect(Collectors.toList());
+            try {
+                for (Future<Object> future : executor.invokeAll(tasks)) {
+                    future.get();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("interrupted while instantiating modules", e);
+            } catch (ExecutionException e) {
+                throw new IllegalStateException("failed to instantiate module", e.getCause());
+            }
+        }
+        logCriticalPath(levels);
+    }
+
+    /**
+     * Returns the time spent building the dependency graph and checking the dependency versions.
+     * @return The build time in nanoseconds.
+     */
+    public long getBuildTime() {
+        return buildTime;
+    }
+
+    /**
+     * Returns the time spent finding and breaking dependency cycles and choosing the preferred implementations.
+     * @return The resolution time in nanoseconds.
+     */
+    public long getResolutionTime() {
+        return resolutionTime;
+    }
+
+    /**
+     * Returns the time spent in the constructor of each module that has been instantiated, excluding the time spent instantiating its dependencies.
+     * @return The construction time of each instantiated module in nanoseconds, by module name.
+     */
+    public Map<String, Long> getConstructionTimes() {
+        Map<String, Long> result = new HashMap<>();
+        moduleNodes.forEach((name, node) -> {
+            // Instances set externally were never constructed by this tree
+            if (node.getLastInstance().isPresent() && node.getConstructionTime() > 0L) {
+                result.put(name, node.getConstructionTime());
+            }
+        });
+        return result;
+    }
+
+    public Optional<ModuleNode> getModuleNode(Class<?> type) {
+        return Optional.ofNullable(moduleNodes.get(type.getName()));
+    }
+
+    boolean isLazy() {
+        return lazy;
+    }
+
+    Optional<VersionNode> getVersionNode(String name) {
+        return Optional.ofNullable(versionNodes.get(name));
+    }
+
+    Collection<ModuleNode> getModuleNodes() {
+        return moduleNodes.values();
+    }
+
+    /**
+     * Returns the modules that implement the given versioned interface.
+     * @param node The versioned interface.
+     * @return The implementations of the versioned interface.
+     */
+    Set<ModuleNode> getImplementations(VersionNode node) {
+        return implementations.getOrDefault(node.getVersionContainer().getName(), Collections.emptySet());
+    }
+
+    /**
+     * Finds the strongly connected components containing more than one node using Tarjan's algorithm.
+     * Modules are connected to the versioned interfaces they depend on and versioned interfaces to their implementations.
+     * @return The cyclic groups of nodes.
+     */
+    private List<Set<Node>> getStronglyConnectedComponents() {
+        List<Set<Node>> result = new ArrayList<>();
+        Map<Node, Integer> indexes = new HashMap<>();
+        Map<Node, Integer> lowLinks = new HashMap<>();
+        Deque<Node> stack = new ArrayDeque<>();
+        Set<Node> onStack = new HashSet<>();
+        Deque<Node> path = new ArrayDeque<>();
+        Deque<Iterator<? extends Node>> iterators = new ArrayDeque<>();
+        Stream.concat(moduleNodes.values().stream(), versionNodes.values().stream()).forEach(root -> {
+            if (indexes.containsKey(root)) {
+                return;
+            }
+            Node next = root;
+            while (next != null || path.size() > 0) {
+                if (next != null) {
+                    indexes.put(next, indexes.size());
+                    lowLinks.put(next, indexes.get(next));
+                    stack.push(next);
+                    onStack.add(next);
+                    path.push(next);
+                    iterators.push(getSuccessors(next).iterator());
+                    next = null;
+                    continue;
+                }
+                Node current = path.peek();
+                Iterator<? extends Node> iterator = iterators.peek();
                 if (iterator.hasNext()) {
-                    Node next = iterator.next();
-                    if (visited.add(node)) {
-                        parents.add(next);
-                        iterators.add((next instanceof ModuleNode ? ((ModuleNode) next).getDependencies().keySet() : ((VersionNode) next).getImplementations()).iterator());
-                    } else if (parents.contains(next)) {
-                        if (next instanceof ModuleNode && ((VersionNode) parents.get(parents.size())).getImplementations().size() > 1) {
-                            iterator.remove();
-                        } else {
-                            removeParent = true;
-                        }
+                    Node successor = iterator.next();
+                    if (!indexes.containsKey(successor)) {
+                        next = successor;
+                    } else if (onStack.contains(successor)) {
+                        lowLinks.put(current, Math.min(lowLinks.get(current), indexes.get(successor)));
                     }
-                } else {
-                    parents.remove(parents.size() - 1);
-                    iterators.removeLast();
-                    if (removeParent && ((VersionNode) parents.get(parents.size())).getImplementations().size() > 1) {
-                        iterators.peekLast().remove();
-                        removeParent = false;
+                    continue;
+                }
+                path.pop();
+                iterators.pop();
+                if (path.size() > 0) {
+                    lowLinks.put(path.peek(), Math.min(lowLinks.get(path.peek()), lowLinks.get(current)));
+                }
+                if (lowLinks.get(current).equals(indexes.get(current))) {
+                    Set<Node> component = new HashSet<>();
+                    Node member;
+                    do {
+                        member = stack.pop();
+                        onStack.remove(member);
+                        component.add(member);
+                    } while (member != current);
+                    if (component.size() > 1) {
+                        result.add(component);
                     }
                 }
             }
-            if (removeParent) {
-                throw new IllegalStateException("cyclic dependency with no alternatives");
-            }
         });
-        versionNodes.values().forEach(node -> node.setPreferredImplementation(node.getImplementations().stream().findAny().orElse(null)));
+        return result;
     }
 
-    public void instantiateModules() {
-        Optional<ModuleNode> node;
-        while ((node = moduleNodes.values().stream().filter(n -> !n.getLastInstance().isPresent()).findAny()).isPresent()) {
-            node.get().createInstance();
+    /**
+     * Chooses the preferred implementations of the versioned interfaces of a cyclic group so that no cycle remains.
+     * Interfaces with an implementation outside of the group are resolved first, then modules whose dependencies are all resolved can be used to resolve the interfaces they implement.
+     * @param component The cyclic group of nodes.
+     * @throws IllegalStateException If the cycle cannot be broken because some interfaces have no alternative implementation.
+     */
+    private void breakCycles(Set<Node> component) {
+        Map<ModuleNode, Integer> pending = new HashMap<>();
+        Map<VersionNode, List<ModuleNode>> dependents = new HashMap<>();
+        Deque<Node> resolved = new ArrayDeque<>();
+        component.forEach(node -> {
+            if (node instanceof ModuleNode) {
+                ModuleNode module = (ModuleNode) node;
+                List<VersionNode> internal = module.getDependencies().keySet().stream().filter(component::contains).collect(Collectors.toList());
+                internal.forEach(dependency -> dependents.computeIfAbsent(dependency, d -> new ArrayList<>()).add(module));
+                pending.put(module, internal.size());
+            } else {
+                VersionNode version = (VersionNode) node;
+                version.getImplementations().stream().filter(n -> !component.contains(n)).findAny().ifPresent(implementation -> {
+                    version.setPreferredImplementation(implementation);
+                    resolved.add(version);
+                });
+            }
+        });
+        while (resolved.size() > 0) {
+            Node node = resolved.poll();
+            if (node instanceof ModuleNode) {
+                ((ModuleNode) node).getModuleContainer().getImplemented().stream().map(versionNodes::get).filter(component::contains).filter(v -> v.getPreferredImplementation() == null).forEach(version -> {
+                    version.setPreferredImplementation((ModuleNode) node);
+                    resolved.add(version);
+                });
+            } else {
+                dependents.getOrDefault(node, Collections.emptyList()).forEach(dependent -> {
+                    if (pending.merge(dependent, -1, Integer::sum) == 0) {
+                        resolved.add(dependent);
+                    }
+                });
+            }
         }
+        pending.entrySet().stream().filter(e -> e.getValue() > 0).map(Map.Entry::getKey).findAny().ifPresent(start -> {
+            List<Node> cycle = new ArrayList<>();
+            Node current = start;
+            while (!cycle.contains(current)) {
+                cycle.add(current);
+                if (current instanceof ModuleNode) {
+                    current = ((ModuleNode) current).getDependencies().keySet().stream().filter(component::contains).filter(v -> v.getPreferredImplementation() == null).findAny().orElseThrow(IllegalStateException::new);
+                } else {
+                    current = ((VersionNode) current).getImplementations().stream().filter(n -> pending.getOrDefault(n, 0) > 0).findAny().orElseThrow(IllegalStateException::new);
+                }
+            }
+            String names = Stream.concat(cycle.subList(cycle.indexOf(current), cycle.size()).stream(), Stream.of(current)).map(this::getName).collect(Collectors.joining(" -> "));
+            logger.log(Level.ERROR, "Cyclic dependency with no alternatives: " + names);
+            throw new IllegalStateException("cyclic dependency with no alternatives: " + names);
+        });
     }
 
-    public Optional<ModuleNode> getModuleNode(Class<?> type) {
-        return Optional.ofNullable(moduleNodes.get(type));
+    /**
+     * Returns the modules that are created by their dependents, which are the preferred implementations of the interfaces injected without a {@link Supplier}.
+     * @return The injected modules.
+     */
+    private Set<ModuleNode> getInjectedModules() {
+        Set<ModuleNode> result = new HashSet<>();
+        moduleNodes.values().forEach(node -> node.getModuleContainer().getDependencies().stream().filter(d -> !d.isSupplier()).map(d -> versionNodes.get(d.getType()).getPreferredImplementation()).filter(Objects::nonNull).forEach(result::add));
+        return result;
     }
 
-    Optional<VersionNode> getVersionNode(Class<?> type) {
-        return Optional.ofNullable(versionNodes.get(type));
+    /**
+     * Returns the instantiations to perform for the given level.
+     * Injected modules are skipped unless they are the preferred implementation of a unique interface, which is then created ahead of its dependents.
+     * @param level The modules of the level.
+     * @param injected The modules that are created by their dependents.
+     * @return The instantiations of the level.
+     */
+    private Stream<Supplier<Object>> getInstantiations(List<ModuleNode> level, Set<ModuleNode> injected) {
+        return level.stream().filter(this::isEager).filter(n -> !n.getLastInstance().isPresent()).map(node -> {
+            if (!injected.contains(node)) {
+                return (Supplier<Object>) node::createInstance;
+            }
+            return node.getModuleContainer().getImplemented().stream().map(versionNodes::get).filter(Objects::nonNull).filter(v -> v.getVersionContainer().isUnique() && v.getPreferredImplementation() == node).findAny().map(v -> (Supplier<Object>) v::getUniqueInstance).orElse(null);
+        }).filter(Objects::nonNull);
     }
 
-    Collection<ModuleNode> getModuleNodes() {
-        return moduleNodes.values();
+    private boolean isEager(ModuleNode node) {
+        return !lazy || node.getModuleContainer().getImplemented().stream().noneMatch(versionNodes::containsKey);
+    }
+
+    private Collection<? extends Node> getSuccessors(Node node) {
+        return node instanceof ModuleNode ? ((ModuleNode) node).getDependencies().keySet() : ((VersionNode) node).getImplementations();
+    }
+
+    private String getName(Node node) {
+        return node instanceof ModuleNode ? ((ModuleNode) node).getModuleContainer().getName() : ((VersionNode) node).getVersionContainer().getName();
+    }
+
+    private List<List<ModuleNode>> getLevels() {
+        Map<ModuleNode, Integer> levels = new HashMap<>();
+        Set<ModuleNode> visiting = new HashSet<>();
+        Deque<ModuleNode> stack = new ArrayDeque<>();
+        moduleNodes.values().forEach(root -> {
+            stack.add(root);
+            while (stack.size() > 0) {
+                ModuleNode current = stack.peekLast();
+                if (levels.containsKey(current)) {
+                    stack.removeLast();
+                    continue;
+                }
+                visiting.add(current);
+                List<ModuleNode> pending = getPreferredDependencies(current).stream().filter(n -> !levels.containsKey(n)).collect(Collectors.toList());
+                if (pending.isEmpty()) {
+                    levels.put(current, getPreferredDependencies(current).stream().mapToInt(levels::get).max().orElse(-1) + 1);
+                    visiting.remove(current);
+                    stack.removeLast();
+                } else if (pending.stream().anyMatch(visiting::contains)) {
+                    throw new IllegalStateException("cyclic dependency involving " + current.getModuleContainer().getName());
+                } else {
+                    stack.addAll(pending);
+                }
+            }
+        });
+        List<List<ModuleNode>> result = new ArrayList<>();
+        levels.forEach((node, level) -> {
+            while (result.size() <= level) {
+                result.add(new ArrayList<>());
+            }
+            result.get(level).add(node);
+        });
+        return result;
+    }
+
+    private List<ModuleNode> getPreferredDependencies(ModuleNode node) {
+        return node.getDependencies().keySet().stream().map(VersionNode::getPreferredImplementation).filter(Objects::nonNull).distinct().collect(Collectors.toList());
+    }
+
+    private void logCriticalPath(List<List<ModuleNode>> levels) {
+        Map<ModuleNode, Long> finishTimes = new HashMap<>();
+        Map<ModuleNode, ModuleNode> predecessors = new HashMap<>();
+        levels.forEach(level -> level.forEach(node -> {
+            ModuleNode predecessor = getPreferredDependencies(node).stream().max(Comparator.comparingLong(finishTimes::get)).orElse(null);
+            predecessors.put(node, predecessor);
+            finishTimes.put(node, node.getConstructionTime() + (predecessor == null ? 0L : finishTimes.get(predecessor)));
+        }));
+        finishTimes.entrySet().stream().max(Comparator.comparingLong(Map.Entry::getValue)).ifPresent(last -> {
+            Deque<String> path = new ArrayDeque<>();
+            for (ModuleNode node = last.getKey(); node != null; node = predecessors.get(node)) {
+                path.addFirst(node.getModuleContainer().getName());
+            }
+            logger.log(Level.INFO, "Critical path (%.3f milliseconds): %s", last.getValue() / 1000000D, String.join(" -> ", path));
+        });
     }
 
     private Node toNode(ComponentContainer componentContainer) {
-        logger.log(Level.DEBUG, "Creating node for " + componentContainer.getComponent().getName());
+        logger.log(Level.DEBUG, "Creating node for %s", componentContainer.getName());
         if (componentContainer instanceof VersionContainer) {
             VersionNode result;
-            versionNodes.put(componentContainer.getComponent(), result = new VersionNode(this, (VersionContainer) componentContainer));
+            versionNodes.put(componentContainer.getName(), result = new VersionNode(this, (VersionContainer) componentContainer));
             return result;
         } else if (componentContainer instanceof ModuleContainer) {
-            ModuleNode result;
-            moduleNodes.put(componentContainer.getComponent(), result = new ModuleNode(this, (ModuleContainer) componentContainer));
+            ModuleNode result = new ModuleNode(this, (ModuleContainer) componentContainer);
+            moduleNodes.put(componentContainer.getName(), result);
+            result.getModuleContainer().getImplemented().forEach(type -> implementations.computeIfAbsent(type, t -> new HashSet<>()).add(result));
             return result;
         }
         throw new IllegalArgumentException("component must be either a versioned interface or a module");
     }
 
     private boolean checkDependencies(ModuleNode node) {
-        Map<VersionNode, Version> outdated = node.getDependencies().entrySet().stream().filter(e -> compareVersions(e.getKey(), e.getValue())).collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue));
+        Map<VersionNode, Dependency> outdated = node.getDependencies().entrySet().stream().filter(e -> compareVersions(e.getKey(), e.getValue())).collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue));
         switch (outdated.size()) {
             case 0:
                 return false;
             default:
-                outdated.forEach((versionNode, version) -> {
-                    logger.log(Level.ERROR, String.format("Mismatching dependencies for module: %s", node.getModuleContainer().getComponent().getName()));
-                    logger.log(Level.ERROR, String.format("\tDependency: %s\tAvailable: %s\tNeeded: %s", versionNode.getVersionContainer().getComponent().getName(), toString(versionNode.getVersionContainer().getVersion()), toString(version)));
+                outdated.forEach((versionNode, dependency) -> {
+                    logger.log(Level.ERROR, "Mismatching dependencies for module: %s", node.getModuleContainer().getName());
+                    logger.log(Level.ERROR, "\tDependency: %s\tAvailable: %s\tNeeded: %s", versionNode.getVersionContainer().getName(), toString(versionNode.getVersionContainer().getMajor(), versionNode.getVersionContainer().getMinor()), toString(dependency.getMajor(), dependency.getMinor()));
                 });
         }
         return true;
     }
 
-    private boolean compareVersions(VersionNode dependency, Version moduleVersion) {
-        Version version = dependency.getVersionContainer().getVersion();
-        return moduleVersion.major() != version.major() || moduleVersion.minor() > version.minor();
+    private boolean compareVersions(VersionNode dependency, Dependency moduleVersion) {
+        VersionContainer version = dependency.getVersionContainer();
+        return moduleVersion.getMajor() != version.getMajor() || moduleVersion.getMinor() > version.getMinor();
     }
 
-    private String toString(Version version) {
-        return String.format("%d.%d", version.major(), version.minor());
+    private String toString(int major, int minor) {
+        return String.format("%d.%d", major, minor);
     }
 }
@@ -0,0 +1,51 @@
+package atunstall.server.core.impl.dependency;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.function.Supplier;
+
+/**
+ * Invocation handler of the proxies injected in lazy mode.
+ * The target is obtained on the first method call, only once even if several threads call the proxy at the same time.
+ */
+class LazyHandle implements InvocationHandler {
+    private final Supplier<Object> factory;
+    private volatile Object target;
+
+    LazyHandle(Supplier<Object> factory) {
+        this.factory = factory;
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+        if (method.getDeclaringClass() == Object.class) {
+            switch (method.getName()) {
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                default:
+                    break;
+            }
+        }
+        try {
+            return method.invoke(getTarget(), args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    private Object getTarget() {
+        Object result = target;
+        if (result == null) {
+            synchronized (this) {
+                result = target;
+                if (result == null) {
+                    target = result = factory.get();
+                }
+            }
+        }
+        return result;
+    }
+}
@@ -1,30 +1,28 @@
 package atunstall.server.core.impl.dependency;
 
-import atunstall.server.core.api.Version;
 import atunstall.server.core.api.logging.Level;
+import atunstall.server.core.impl.container.Dependency;
 import atunstall.server.core.impl.container.ModuleContainer;
+import atunstall.server.core.impl.event.FlightRecorderEvents;
 
-import java.lang.annotation.Annotation;
-import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.ParameterizedType;
-import java.lang.reflect.Type;
 import java.util.ArrayDeque;
-import java.util.Arrays;
 import java.util.Deque;
-import java.util.HashSet;
-import java.util.Iterator;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
-import java.util.Set;
 import java.util.function.Supplier;
 
 public class ModuleNode extends Node {
+    private static final Object[] NO_ARGUMENTS = new Object[0];
+
     private final ModuleContainer moduleContainer;
-    private Set<VersionNode> implemented;
-    private Map<VersionNode, Boolean> dependencies;
-    private Map<VersionNode, Version> dependencyVersions;
-    private Object instance;
+    private Map<VersionNode, Dependency> dependencies;
+    private volatile Object instance;
+    private volatile long constructionTime;
+    private volatile Supplier<?>[] plan;
+    private boolean nested;
+    private volatile Supplier<Object> supplier;
 
     ModuleNode(DependencyTree tree, ModuleContainer moduleContainer) {
         super(tree);
@@ -39,116 +37,198 @@ public class ModuleNode extends Node {
         return moduleContainer;
     }
 
-    Set<VersionNode> getImplemented() {
-        if (implemented == null) {
-            implemented = new HashSet<>();
-            Deque<Class<?>> processing = new ArrayDeque<>();
-            processing.add(moduleContainer.getComponent());
-            while (processing.size() > 0) {
-                Class<?> current = processing.pop();
-                tree.getVersionNode(current).ifPresent(versionNode -> implemented.add(versionNode));
-                Class<?> superclass = current.getSuperclass();
-                if (superclass != null) {
-                    processing.add(superclass);
-                }
-                processing.addAll(Arrays.asList(current.getInterfaces()));
-            }
+    Map<VersionNode, Dependency> getDependencies() {
+        if (dependencies == null) {
+            dependencies = new LinkedHashMap<>();
+            moduleContainer.getDependencies().forEach(dependency -> dependencies.put(tree.getVersionNode(dependency.getType()).orElseThrow(IllegalStateException::new), dependency));
         }
-        return implemented;
+        return dependencies;
     }
 
-    Map<VersionNode, Version> getDependencies() {
-        if (dependencies == null) {
-            dependencies = new LinkedHashMap<>();
-            dependencyVersions = new LinkedHashMap<>();
-            Annotation[][] annotations = moduleContainer.getComponent().getConstructors()[0].getParameterAnnotations();
-            Type[] parameters = moduleContainer.getComponent().getConstructors()[0].getGenericParameterTypes();
-            for (int index = 0; index < parameters.length; index++) {
-                Class<?> raw;
-                boolean supplier = false;
-                if (parameters[index] instanceof ParameterizedType) {
-                    raw = (Class<?>) ((ParameterizedType) parameters[index]).getRawType();
-                    if (supplier = raw == Supplier.class) {
-                        parameters[index] = ((ParameterizedType) parameters[index]).getActualTypeArguments()[0];
-                        if (parameters[index] instanceof ParameterizedType) {
-                            raw = (Class<?>) ((ParameterizedType) parameters[index]).getRawType();
-                        } else {
-                            raw = (Class<?>) parameters[index];
-                        }
-                    }
+    Object createInstance() {
+        tree.logger.log(Level.DEBUG, "Creating an instance of %s", moduleContainer.getName());
+        return instance = instantiate(false);
+    }
+
+    /**
+     * Returns the supplier injected into modules that depend on this module through a {@link Supplier}.
+     * Every call to the supplier creates a new instance using this node's instantiation plan.
+     * @return The supplier of instances of this module.
+     */
+    Supplier<Object> getSupplier() {
+        Supplier<Object> result = supplier;
+        if (result == null) {
+            supplier = result = () -> instantiate(true);
+        }
+        return result;
+    }
+
+    /**
+     * Returns the instance of this module, creating it if it doesn't exist yet.
+     * In lazy mode, this is how a module that no other module depends on can be instantiated after the eager modules.
+     * @return The instance of this module.
+     */
+    public synchronized Object getInstance() {
+        Object result = instance;
+        return result != null ? result : createInstance();
+    }
+
+    Optional<Object> getLastInstance() {
+        return Optional.ofNullable(instance);
+    }
+
+    /**
+     * Returns the time spent in this module's constructor during the last instantiation, excluding the time spent instantiating its dependencies.
+     * Instances created through suppliers are not timed.
+     * @return The construction time in nanoseconds.
+     */
+    long getConstructionTime() {
+        return constructionTime;
+    }
+
+    private Object instantiate(boolean supplierCall) {
+        Supplier<?>[] plan = getPlan();
+        if (nested) {
+            return instantiateNested(supplierCall);
+        }
+        Object[] args = plan.length == 0 ? NO_ARGUMENTS : new Object[plan.length];
+        for (int index = 0; index < args.length; index++) {
+            args[index] = plan[index].get();
+        }
+        return construct(args, supplierCall);
+    }
+
+    /**
+     * Instantiates this module along with the new instances of its non-unique dependencies.
+     * Dependencies are instantiated using an explicit stack rather than recursively, so that long chains of non-unique dependencies cannot overflow the stack of the thread.
+     * @param supplierCall Whether this module is instantiated through its supplier.
+     * @return The new instance.
+     */
+    private Object instantiateNested(boolean supplierCall) {
+        Deque<Instantiation> stack = new ArrayDeque<>();
+        stack.push(new Instantiation(this));
+        while (true) {
+            Instantiation current = stack.peek();
+            if (current.index < current.args.length) {
+                Supplier<?> source = current.plan[current.index];
+                if (source instanceof Creation) {
+                    ModuleNode dependency = ((Creation) source).node;
+                    tree.logger.log(Level.DEBUG, "Creating an instance of %s", dependency.moduleContainer.getName());
+                    stack.push(new Instantiation(dependency));
                 } else {
-                    raw = (Class<?>) parameters[index];
+                    current.args[current.index++] = source.get();
                 }
-                Version version = null;
-                for (Annotation annotation : annotations[index]) {
-                    if (annotation instanceof Version) {
-                        version = (Version) annotation;
-                        break;
-                    }
-                }
-                VersionNode node = tree.getVersionNode(raw).orElseThrow(IllegalStateException::new);
-                dependencies.put(node, supplier);
-                dependencyVersions.put(node, version);
+                continue;
+            }
+            stack.pop();
+            Instantiation parent = stack.peek();
+            if (parent == null) {
+                return construct(current.args, supplierCall);
             }
+            parent.args[parent.index++] = current.node.instance = current.node.construct(current.args, false);
         }
-        return dependencyVersions;
     }
 
-    Object createInstance() {
-        Deque<ModuleNode> nodes = new ArrayDeque<>();
-        Deque<Object[]> arguments = new ArrayDeque<>();
-        Deque<Integer> indexes = new ArrayDeque<>();
-        Deque<Iterator<Map.Entry<VersionNode, Boolean>>> iterators = new ArrayDeque<>();
-        Deque<Boolean> suppliers = new ArrayDeque<>();
-        nodes.add(this);
-        arguments.add(new Object[getDependencies().size()]);
-        indexes.add(0);
-        iterators.add(dependencies.entrySet().iterator());
-        while (nodes.size() > 0) {
-            Object[] args = arguments.peekLast();
-            int index = indexes.peekLast();
-            Iterator<Map.Entry<VersionNode, Boolean>> iterator = iterators.peekLast();
-            if (index < args.length) {
-                Map.Entry<VersionNode, Boolean> dependency = iterator.next();
-                Optional<Object> opt = dependency.getKey().getInstance();
-                if (opt.isPresent()) {
-                    args[index] = dependency.getValue() ? (Supplier<?>) dependency.getKey().getPreferredImplementation()::createInstance : opt.get();
-                    index = indexes.removeLast();
-                    indexes.add(index + 1);
-                } else {
-                    ModuleNode implementation = dependency.getKey().getPreferredImplementation();
-                    nodes.add(implementation);
-                    arguments.add(new Object[implementation.getDependencies().size()]);
-                    indexes.add(0);
-                    iterators.add(implementation.dependencies.entrySet().iterator());
-                    suppliers.add(dependency.getValue());
+    /**
+     * Calls the factory of this module with the given arguments.
+     * Only instantiations made while booting are timed, unless the flight recorder records instantiations.
+     * @param args The constructor arguments.
+     * @param supplierCall Whether this module is instantiated through its supplier.
+     * @return The new instance.
+     */
+    private Object construct(Object[] args, boolean supplierCall) {
+        boolean recorded = FlightRecorderEvents.MODULE_INSTANTIATION.isEnabled();
+        if (supplierCall && !recorded) {
+            return create(args);
+        }
+        long start = System.nanoTime();
+        try {
+            return create(args);
+        } finally {
+            long time = System.nanoTime() - start;
+            if (!supplierCall) {
+                constructionTime = time;
+            }
+            if (recorded) {
+                FlightRecorderEvents.MODULE_INSTANTIATION.commit(moduleContainer.getName(), time, supplierCall);
+            }
+        }
+    }
+
+    private Object create(Object[] args) {
+        try {
+            return moduleContainer.getFactory().create(args);
+        } catch (Exception e) {
+            tree.logger.log(Level.ERROR, "Error while creating an instance of " + moduleContainer.getName(), e);
+            throw new IllegalStateException("could not create an instance of " + moduleContainer.getName(), e);
+        }
+    }
+
+    /**
+     * Returns the instantiation plan of this module, linking it if necessary.
+     * The plan contains one argument source per constructor parameter, in order.
+     * New instances of non-unique dependencies are marked so that {@link #instantiate(boolean)} can create them without recursing.
+     * @return The instantiation plan.
+     */
+    private Supplier<?>[] getPlan() {
+        Supplier<?>[] result = plan;
+        if (result == null) {
+            List<Dependency> dependencies = moduleContainer.getDependencies();
+            result = new Supplier<?>[dependencies.size()];
+            for (int index = 0; index < result.length; index++) {
+                VersionNode node = tree.getVersionNode(dependencies.get(index).getType()).orElseThrow(IllegalStateException::new);
+                ModuleNode implementation = node.getPreferredImplementation();
+                if (implementation == null) {
+                    throw new IllegalStateException("no implementation of " + node.getVersionContainer().getName());
                 }
-            } else {
-                arguments.removeLast();
-                indexes.removeLast();
-                iterators.removeLast();
-                ModuleNode last = nodes.removeLast();
-                Object instance = last.createInstance(args);
-                if (nodes.size() > 0) {
-                    arguments.peekLast()[index = indexes.removeLast()] = suppliers.removeLast() ? (Supplier<?>) last::createInstance : instance;
-                    indexes.add(index + 1);
+                if (dependencies.get(index).isSupplier()) {
+                    Supplier<Object> dependency = implementation.getSupplier();
+                    result[index] = () -> dependency;
+                } else if (tree.isLazy() && node.getVersionContainer().isUnique()) {
+                    result[index] = node::getLazyUniqueInstance;
+                } else if (tree.isLazy()) {
+                    result[index] = () -> node.createHandle(implementation::createInstance);
+                } else if (node.getVersionContainer().isUnique()) {
+                    result[index] = node::getUniqueInstance;
+                } else {
+                    result[index] = new Creation(implementation);
+                    nested = true;
                 }
             }
+            plan = result;
         }
-        return getLastInstance().orElseThrow(IllegalStateException::new);
+        return result;
     }
 
-    Optional<Object> getLastInstance() {
-        return Optional.ofNullable(instance);
+    /**
+     * Plan entry creating a new instance of a non-unique dependency.
+     */
+    private static class Creation implements Supplier<Object> {
+        private final ModuleNode node;
+
+        private Creation(ModuleNode node) {
+            this.node = node;
+        }
+
+        @Override
+        public Object get() {
+            return node.createInstance();
+        }
     }
 
-    private Object createInstance(Object[] args) {
-        tree.logger.log(Level.DEBUG, "Creating an instance of " + moduleContainer.getComponent().getName());
-        try {
-            return instance = moduleContainer.getComponent().getConstructors()[0].newInstance(args);
-        } catch (InstantiationException | IllegalAccessException | InvocationTargetException e) {
-            e.printStackTrace();
+    /**
+     * Instantiation in progress, with the arguments collected so far.
+     */
+    private static class Instantiation {
+        private final ModuleNode node;
+        private final Supplier<?>[] plan;
+        private final Object[] args;
+        private int index;
+
+        private Instantiation(ModuleNode node) {
+            this.node = node;
+            plan = node.getPlan();
+            args = new Object[plan.length];
         }
-        return null;
     }
 }
@@ -2,15 +2,18 @@ package atunstall.server.core.impl.dependency;
 
 import atunstall.server.core.impl.container.VersionContainer;
 
+import java.lang.reflect.Proxy;
+import java.util.HashSet;
 import java.util.Optional;
 import java.util.Set;
-import java.util.stream.Collectors;
+import java.util.function.Supplier;
 
 class VersionNode extends Node {
     private final VersionContainer versionContainer;
     private Set<ModuleNode> implementations;
     private ModuleNode preferredImplementation;
-    private Object instance;
+    private volatile Object instance;
+    private volatile Object handle;
 
     VersionNode(DependencyTree tree, VersionContainer versionContainer) {
         super(tree);
@@ -23,7 +26,7 @@ class VersionNode extends Node {
 
     Set<ModuleNode> getImplementations() {
         if (implementations == null) {
-            implementations = tree.getModuleNodes().stream().filter(n -> n.getImplemented().contains(this)).collect(Collectors.toSet());
+            implementations = new HashSet<>(tree.getImplementations(this));
         }
         return implementations;
     }
@@ -47,4 +50,50 @@ class VersionNode extends Node {
         }
         return Optional.empty();
     }
+
+    Object getUniqueInstance() {
+        Object result = instance;
+        if (result == null) {
+            synchronized (this) {
+                result = instance;
+                if (result == null) {
+                    instance = result = getInstance().orElseGet(preferredImplementation::createInstance);
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the value to inject for this unique interface in lazy mode.
+     * This is the unique instance if it already exists, or a shared handle that creates it on first use otherwise.
+     * @return The unique instance or its handle.
+     */
+    Object getLazyUniqueInstance() {
+        Optional<Object> opt = getInstance();
+        if (opt.isPresent()) {
+            return opt.get();
+        }
+        Object result = handle;
+        if (result == null) {
+            synchronized (this) {
+                result = handle;
+                if (result == null) {
+                    handle = result = createHandle(this::getUniqueInstance);
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Creates a handle implementing this interface which forwards all calls to the value returned by the given supplier.
+     * The supplier is only called on the first method call.
+     * @param target The supplier of the handle's target.
+     * @return The new handle.
+     */
+    Object createHandle(Supplier<Object> target) {
+        Class<?> type = versionContainer.getComponent();
+        return Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] {type}, new LazyHandle(target));
+    }
 }
@@ -0,0 +1,203 @@
+package atunstall.server.core.impl.event;
+
+import java.lang.annotation.Annotation;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Flight recorder events emitted by the container and the logging pipeline.
+ * The core is compiled for a Java version without the {@code jdk.jfr} API, so event types are declared at runtime through {@code jdk.jfr.EventFactory}.
+ * Events are only available if the {@code jdk.jfr} module is resolved, for example with {@code --add-modules jdk.jfr}, and otherwise never enabled.
+ * Callers must check {@link EventKind#isEnabled()} before gathering the values of an event, which makes disabled events cost a single call.
+ */
+public final class FlightRecorderEvents {
+    private static final String JFR_MODULE = "jdk.jfr";
+    private static final String CATEGORY = "Atunstall Server";
+    private static final String NANOSECONDS = "NANOSECONDS";
+
+    /**
+     * Instantiation of a module, with the module's class name, the time spent in its constructor and whether it was created by a {@link java.util.function.Supplier}.
+     */
+    public static final EventKind MODULE_INSTANTIATION = new EventKind("atunstall.ModuleInstantiation", "Module Instantiation", "Container",
+            field(String.class, "module", "Module", null), field(long.class, "construction", "Construction Time", NANOSECONDS), field(boolean.class, "supplier", "Supplier Call", null));
+
+    /**
+     * Construction of the dependency tree, with the number of modules, versioned interfaces and cyclic groups and the time spent building the graph and resolving cycles.
+     */
+    public static final EventKind DEPENDENCY_RESOLUTION = new EventKind("atunstall.DependencyResolution", "Dependency Resolution", "Container",
+            field(int.class, "modules", "Modules", null), field(int.class, "versions", "Versioned Interfaces", null), field(int.class, "cycles", "Cyclic Groups", null),
+            field(long.class, "build", "Build Time", NANOSECONDS), field(long.class, "resolution", "Resolution Time", NANOSECONDS));
+
+    /**
+     * Loading of a component JAR, with its path, whether its indexed components were used and the time spent loading it.
+     */
+    public static final EventKind JAR_LOADING = new EventKind("atunstall.JarLoading", "JAR Loading", "Container",
+            field(String.class, "path", "Path", null), field(boolean.class, "indexed", "Indexed", null), field(long.class, "loading", "Loading Time", NANOSECONDS));
+
+    /**
+     * Publication of a log message to the logging queue, with the level of the message, the time spent publishing it and whether it was dropped.
+     */
+    public static final EventKind LOG_ENQUEUE = new EventKind("atunstall.LogEnqueue", "Log Enqueue", "Logging",
+            field(String.class, "level", "Level", null), field(long.class, "publication", "Publication Time", NANOSECONDS), field(boolean.class, "dropped", "Dropped", null));
+
+    /**
+     * Dispatch of a log message to its listeners, with its logger, its level and the time between it being logged and dispatched.
+     */
+    public static final EventKind LOG_DISPATCH = new EventKind("atunstall.LogDispatch", "Log Dispatch", "Logging",
+            field(String.class, "logger", "Logger", null), field(String.class, "level", "Level", null), field(long.class, "latency", "Latency", NANOSECONDS));
+
+    /**
+     * Periodic sample of the root logger's queue, with the number of queued messages, the capacity of the queue and the total number of dropped messages.
+     */
+    public static final EventKind LOG_QUEUE = new EventKind("atunstall.LogQueue", "Log Queue", "Logging",
+            field(int.class, "depth", "Depth", null), field(int.class, "capacity", "Capacity", null), field(long.class, "dropped", "Dropped Messages", null));
+
+    private FlightRecorderEvents() {}
+
+    private static Field field(Class<?> type, String name, String label, String timespan) {
+        return new Field(type, name, label, timespan);
+    }
+
+    /**
+     * Type of event declared with the flight recorder.
+     */
+    public static final class EventKind {
+        private final MethodHandle isEnabled;
+        private final MethodHandle newEvent;
+        private final MethodHandle set;
+        private final MethodHandle commit;
+
+        private EventKind(String name, String label, String category, Field... fields) {
+            MethodHandle[] handles = Jfr.INSTANCE.map(jfr -> jfr.declare(name, label, category, fields)).orElse(null);
+            isEnabled = handles == null ? null : handles[0];
+            newEvent = handles == null ? null : handles[1];
+            set = handles == null ? null : handles[2];
+            commit = handles == null ? null : handles[3];
+        }
+
+        /**
+         * Checks if this event is enabled in a running recording.
+         * @return True if the event is enabled, false otherwise.
+         */
+        public boolean isEnabled() {
+            if (isEnabled == null) {
+                return false;
+            }
+            try {
+                return (boolean) isEnabled.invokeExact();
+            } catch (Throwable e) {
+                return false;
+            }
+        }
+
+        /**
+         * Commits an event of this type with the given field values, in the order in which the fields were declared.
+         * @param values The values of the fields.
+         */
+        public void commit(Object... values) {
+            if (newEvent == null) {
+                return;
+            }
+            try {
+                Object event = newEvent.invokeExact();
+                for (int index = 0; index < values.length; index++) {
+                    set.invokeExact(event, index, values[index]);
+                }
+                commit.invokeExact(event);
+            } catch (Throwable ignored) {
+                // Events are best effort and must never break the code emitting them
+            }
+        }
+    }
+
+    private static final class Field {
+        private final Class<?> type;
+        private final String name;
+        private final String label;
+        private final String timespan;
+
+        private Field(Class<?> type, String name, String label, String timespan) {
+            this.type = type;
+            this.name = name;
+            this.label = label;
+            this.timespan = timespan;
+        }
+    }
+
+    /**
+     * Reflective access to the flight recorder API.
+     */
+    private static final class Jfr {
+        private static final Optional<Jfr> INSTANCE = load();
+
+        private final ClassLoader loader;
+        private final Constructor<?> annotationElement;
+        private final Constructor<?> valueDescriptor;
+        private final MethodHandle create;
+
+        private Jfr(Module module) throws ReflectiveOperationException {
+            FlightRecorderEvents.class.getModule().addReads(module);
+            loader = module.getClassLoader();
+            annotationElement = type("AnnotationElement").getConstructor(Class.class, Object.class);
+            valueDescriptor = type("ValueDescriptor").getConstructor(Class.class, String.class, List.class);
+            create = MethodHandles.publicLookup().findStatic(type("EventFactory"), "create", MethodType.methodType(type("EventFactory"), List.class, List.class));
+        }
+
+        private static Optional<Jfr> load() {
+            try {
+                Optional<Module> module = ModuleLayer.boot().findModule(JFR_MODULE);
+                return module.isPresent() ? Optional.of(new Jfr(module.get())) : Optional.empty();
+            } catch (ReflectiveOperationException | RuntimeException e) {
+                return Optional.empty();
+            }
+        }
+
+        private MethodHandle[] declare(String name, String label, String category, Field[] fields) {
+            try {
+                List<Object> annotations = new ArrayList<>();
+                annotations.add(annotation("Name", name));
+                annotations.add(annotation("Label", label));
+                annotations.add(annotation("Category", new String[] {CATEGORY, category}));
+                annotations.add(annotation("StackTrace", false));
+                List<Object> descriptors = new ArrayList<>();
+                for (Field field : fields) {
+                    List<Object> fieldAnnotations = new ArrayList<>();
+                    fieldAnnotations.add(annotation("Label", field.label));
+                    if (field.timespan != null) {
+                        fieldAnnotations.add(annotation("Timespan", field.timespan));
+                    }
+                    descriptors.add(valueDescriptor.newInstance(field.type, field.name, Collections.unmodifiableList(fieldAnnotations)));
+                }
+                Object factory = create.invoke(annotations, descriptors);
+                Class<?> factoryType = type("EventFactory");
+                Class<?> eventType = type("EventType");
+                Class<?> event = type("Event");
+                MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+                Object type = lookup.findVirtual(factoryType, "getEventType", MethodType.methodType(eventType)).invoke(factory);
+                return new MethodHandle[] {
+                        lookup.findVirtual(eventType, "isEnabled", MethodType.methodType(boolean.class)).bindTo(type),
+                        lookup.findVirtual(factoryType, "newEvent", MethodType.methodType(event)).bindTo(factory).asType(MethodType.methodType(Object.class)),
+                        lookup.findVirtual(event, "set", MethodType.methodType(void.class, int.class, Object.class)).asType(MethodType.methodType(void.class, Object.class, int.class, Object.class)),
+                        lookup.findVirtual(event, "commit", MethodType.methodType(void.class)).asType(MethodType.methodType(void.class, Object.class))
+                };
+            } catch (Throwable e) {
+                return null;
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        private Object annotation(String name, Object value) throws ReflectiveOperationException {
+            return annotationElement.newInstance((Class<? extends Annotation>) type(name), value);
+        }
+
+        private Class<?> type(String name) throws ClassNotFoundException {
+            return Class.forName(JFR_MODULE + "." + name, false, loader);
+        }
+    }
+}
@@ -0,0 +1,233 @@
+package atunstall.server.core.impl.logging;
+
+import atunstall.server.core.api.logging.Level;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IllegalFormatException;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Command line tool converting log segments written with {@link BinaryRecordEncoder} back into text or JSON lines.
+ * Usage: {@code BinaryLogDecoder [--json] <file>...}, where files ending in {@code .gz} are decompressed first.
+ */
+public class BinaryLogDecoder {
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final String JSON_OPTION = "--json";
+    private static final String COMPRESSED_SUFFIX = ".gz";
+    private static final Level[] LEVELS = Level.values();
+
+    private final PrintStream out;
+    private final boolean json;
+    private final List<String> loggers;
+    private final List<String> patterns;
+    private long timestamp;
+
+    private BinaryLogDecoder(PrintStream out, boolean json) {
+        this.out = out;
+        this.json = json;
+        loggers = new ArrayList<>();
+        patterns = new ArrayList<>();
+    }
+
+    public static void main(String[] args) throws IOException {
+        boolean json = args.length > 0 && JSON_OPTION.equals(args[0]);
+        String[] files = json ? Arrays.copyOfRange(args, 1, args.length) : args;
+        if (files.length == 0) {
+            System.err.println("Usage: BinaryLogDecoder [" + JSON_OPTION + "] <file>...");
+            System.exit(1);
+        }
+        for (String file : files) {
+            new BinaryLogDecoder(System.out, json).decode(Paths.get(file));
+        }
+        System.out.flush();
+    }
+
+    private void decode(Path file) throws IOException {
+        InputStream stream = Files.newInputStream(file);
+        if (file.getFileName().toString().endsWith(COMPRESSED_SUFFIX)) {
+            stream = new GZIPInputStream(stream);
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(stream))) {
+            if (in.readInt() != BinaryRecordEncoder.MAGIC || in.readByte() != BinaryRecordEncoder.FORMAT_VERSION) {
+                throw new IOException("unsupported log file " + file);
+            }
+            while (true) {
+                int tag;
+                try {
+                    tag = in.readUnsignedByte();
+                } catch (EOFException e) {
+                    break;
+                }
+                switch (tag) {
+                    case BinaryRecordEncoder.END:
+                        // The rest of the segment was preallocated but never written
+                        return;
+                    case BinaryRecordEncoder.LOGGER:
+                        define(loggers, (int) readVarLong(in), readString(in));
+                        break;
+                    case BinaryRecordEncoder.PATTERN:
+                        define(patterns, (int) readVarLong(in), readString(in));
+                        break;
+                    case BinaryRecordEncoder.MESSAGE:
+                    case BinaryRecordEncoder.TEXT:
+                        readRecord(in, tag == BinaryRecordEncoder.MESSAGE);
+                        break;
+                    default:
+                        throw new IOException("unknown record " + tag + " in " + file);
+                }
+            }
+        }
+    }
+
+    private void readRecord(DataInputStream in, boolean parameterized) throws IOException {
+        timestamp += unzigzag(readVarLong(in));
+        String logger = loggers.get((int) readVarLong(in));
+        Level level = LEVELS[in.readUnsignedByte()];
+        String pattern = null;
+        Object[] args = null;
+        String message;
+        if (parameterized) {
+            pattern = patterns.get((int) readVarLong(in));
+            args = new Object[(int) readVarLong(in)];
+            for (int index = 0; index < args.length; index++) {
+                args[index] = readArgument(in);
+            }
+            try {
+                message = String.format(pattern, args);
+            } catch (IllegalFormatException e) {
+                message = pattern + " " + Arrays.toString(args);
+            }
+        } else {
+            message = readString(in);
+        }
+        String throwable = in.readBoolean() ? readString(in) : null;
+        if (json) {
+            StringBuilder builder = new StringBuilder("{\"timestamp\":\"").append(Instant.ofEpochMilli(timestamp)).append("\",\"logger\":");
+            appendJson(builder, logger).append(",\"level\":\"").append(level.name()).append("\",\"message\":");
+            appendJson(builder, message);
+            if (pattern != null) {
+                appendJson(builder.append(",\"pattern\":"), pattern).append(",\"args\":[");
+                for (int index = 0; index < args.length; index++) {
+                    if (index > 0) {
+                        builder.append(',');
+                    }
+                    // JSON has no literals for NaN and infinities, so they are written as strings
+                    if (args[index] == null || args[index] instanceof Number && !isNonFinite((Number) args[index]) || args[index] instanceof Boolean) {
+                        builder.append(args[index]);
+                    } else {
+                        appendJson(builder, String.valueOf(args[index]));
+                    }
+                }
+                builder.append(']');
+            }
+            if (throwable != null) {
+                appendJson(builder.append(",\"throwable\":"), throwable);
+            }
+            out.println(builder.append('}'));
+        } else {
+            out.println(Instant.ofEpochMilli(timestamp) + " [" + logger + "] " + level.name() + " | " + message);
+            if (throwable != null) {
+                out.print(throwable);
+            }
+        }
+    }
+
+    private Object readArgument(DataInputStream in) throws IOException {
+        byte type = in.readByte();
+        switch (type) {
+            case BinaryRecordEncoder.NULL:
+                return null;
+            case BinaryRecordEncoder.INT:
+                return (int) unzigzag(readVarLong(in));
+            case BinaryRecordEncoder.LONG:
+                return unzigzag(readVarLong(in));
+            case BinaryRecordEncoder.DOUBLE:
+                return in.readDouble();
+            case BinaryRecordEncoder.BOOLEAN:
+                return in.readBoolean();
+            case BinaryRecordEncoder.CHAR:
+                return in.readChar();
+            case BinaryRecordEncoder.STRING:
+                return readString(in);
+            default:
+                throw new IOException("unknown argument type " + type);
+        }
+    }
+
+    private static boolean isNonFinite(Number number) {
+        return number instanceof Double && !Double.isFinite(number.doubleValue());
+    }
+
+    private static void define(List<String> dictionary, int id, String value) throws IOException {
+        if (id != dictionary.size()) {
+            throw new IOException("unexpected dictionary id " + id);
+        }
+        dictionary.add(value);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[(int) readVarLong(in)];
+        in.readFully(bytes);
+        return new String(bytes, UTF_8);
+    }
+
+    private static long readVarLong(DataInputStream in) throws IOException {
+        long result = 0L;
+        for (int shift = 0; ; shift += 7) {
+            int b = in.readUnsignedByte();
+            result |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return result;
+            }
+        }
+    }
+
+    private static long unzigzag(long value) {
+        return (value >>> 1) ^ -(value & 1L);
+    }
+
+    private static StringBuilder appendJson(StringBuilder builder, String value) {
+        builder.append('"');
+        for (int index = 0; index < value.length(); index++) {
+            char c = value.charAt(index);
+            switch (c) {
+                case '"':
+                    builder.append("\\\"");
+                    break;
+                case '\\':
+                    builder.append("\\\\");
+                    break;
+                case '\n':
+                    builder.append("\\n");
+                    break;
+                case '\r':
+                    builder.append("\\r");
+                    break;
+                case '\t':
+                    builder.append("\\t");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        builder.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        builder.append(c);
+                    }
+                    break;
+            }
+        }
+        return builder.append('"');
+    }
+}
@@ -0,0 +1,167 @@
+package atunstall.server.core.impl.logging;
+
+import atunstall.server.core.api.logging.LogMessage;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Encodes records in a compact binary format, read back by {@link BinaryLogDecoder}.
+ * A segment starts with a header, followed by records which each start with a tag byte.
+ * Logger names and message patterns are written once per segment in definition records and then referenced by id.
+ * Messages logged with a pattern are stored as the pattern id and the raw arguments, so they are never formatted while logging.
+ * Integers are written as variable length quantities, zigzag encoded when they may be negative, and strings as their UTF-8 length and bytes.
+ */
+final class BinaryRecordEncoder implements RecordEncoder {
+    static final int MAGIC = 0x414C4F47;
+    static final byte FORMAT_VERSION = 1;
+
+    static final byte END = 0;
+    static final byte LOGGER = 1;
+    static final byte PATTERN = 2;
+    static final byte MESSAGE = 3;
+    static final byte TEXT = 4;
+
+    static final byte NULL = 0;
+    static final byte INT = 1;
+    static final byte LONG = 2;
+    static final byte DOUBLE = 3;
+    static final byte BOOLEAN = 4;
+    static final byte CHAR = 5;
+    static final byte STRING = 6;
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final String SUFFIX = ".bin";
+
+    private final Map<String, Integer> loggers;
+    private final Map<String, Integer> patterns;
+    private long lastTimestamp;
+
+    BinaryRecordEncoder() {
+        loggers = new HashMap<>();
+        patterns = new HashMap<>();
+    }
+
+    @Override
+    public String getSuffix() {
+        return SUFFIX;
+    }
+
+    @Override
+    public void startSegment(ByteBuffer out) {
+        loggers.clear();
+        patterns.clear();
+        lastTimestamp = 0L;
+        out.putInt(MAGIC);
+        out.put(FORMAT_VERSION);
+    }
+
+    @Override
+    public boolean encode(LogMessage message, ByteBuffer out) {
+        int start = out.position();
+        int loggerCount = loggers.size();
+        int patternCount = patterns.size();
+        long timestamp = lastTimestamp;
+        try {
+            write(message, out);
+            return true;
+        } catch (BufferOverflowException e) {
+            // Forgets the definitions that didn't make it into the segment
+            out.position(start);
+            loggers.values().removeIf(id -> id >= loggerCount);
+            patterns.values().removeIf(id -> id >= patternCount);
+            lastTimestamp = timestamp;
+            return false;
+        }
+    }
+
+    private void write(LogMessage message, ByteBuffer out) {
+        LogMessageImpl impl = message instanceof LogMessageImpl ? (LogMessageImpl) message : null;
+        String pattern = impl == null ? null : impl.getPattern();
+        int loggerId = define(loggers, LOGGER, message.getLogger().getFullName(), out);
+        int patternId = pattern == null ? -1 : define(patterns, PATTERN, pattern, out);
+        long timestamp = impl == null ? System.currentTimeMillis() : impl.getTimestamp();
+        out.put(pattern == null ? TEXT : MESSAGE);
+        writeVarLong(out, zigzag(timestamp - lastTimestamp));
+        lastTimestamp = timestamp;
+        writeVarLong(out, loggerId);
+        out.put((byte) message.getLevel().ordinal());
+        if (pattern == null) {
+            writeString(out, message.getMessage());
+        } else {
+            writeVarLong(out, patternId);
+            Object[] args = impl.getArguments();
+            writeVarLong(out, args.length);
+            for (Object arg : args) {
+                writeArgument(out, arg);
+            }
+        }
+        if (message.getThrowable().isPresent()) {
+            StringWriter writer = new StringWriter();
+            message.getThrowable().get().printStackTrace(new PrintWriter(writer));
+            out.put((byte) 1);
+            writeString(out, writer.toString());
+        } else {
+            out.put((byte) 0);
+        }
+    }
+
+    private int define(Map<String, Integer> dictionary, byte tag, String value, ByteBuffer out) {
+        Integer id = dictionary.get(value);
+        if (id == null) {
+            id = dictionary.size();
+            out.put(tag);
+            writeVarLong(out, id);
+            writeString(out, value);
+            dictionary.put(value, id);
+        }
+        return id;
+    }
+
+    private void writeArgument(ByteBuffer out, Object arg) {
+        if (arg == null) {
+            out.put(NULL);
+        } else if (arg instanceof Integer || arg instanceof Short || arg instanceof Byte) {
+            out.put(INT);
+            writeVarLong(out, zigzag(((Number) arg).intValue()));
+        } else if (arg instanceof Long) {
+            out.put(LONG);
+            writeVarLong(out, zigzag((Long) arg));
+        } else if (arg instanceof Double || arg instanceof Float) {
+            out.put(DOUBLE);
+            out.putDouble(((Number) arg).doubleValue());
+        } else if (arg instanceof Boolean) {
+            out.put(BOOLEAN);
+            out.put((byte) ((Boolean) arg ? 1 : 0));
+        } else if (arg instanceof Character) {
+            out.put(CHAR);
+            out.putChar((Character) arg);
+        } else {
+            out.put(STRING);
+            writeString(out, String.valueOf(arg));
+        }
+    }
+
+    private static void writeString(ByteBuffer out, String value) {
+        byte[] bytes = String.valueOf(value).getBytes(UTF_8);
+        writeVarLong(out, bytes.length);
+        out.put(bytes);
+    }
+
+    private static void writeVarLong(ByteBuffer out, long value) {
+        while ((value & ~0x7FL) != 0L) {
+            out.put((byte) ((value & 0x7FL) | 0x80L));
+            value >>>= 7;
+        }
+        out.put((byte) value);
+    }
+
+    private static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+}
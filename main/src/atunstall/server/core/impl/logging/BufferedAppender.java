@@ -0,0 +1,154 @@
+package atunstall.server.core.impl.logging;
+
+import atunstall.server.core.api.logging.Level;
+import atunstall.server.core.api.logging.LogMessage;
+
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Log listener that writes formatted messages to channels through reusable direct buffers.
+ * Messages are formatted with a precompiled template and encoded into the buffer of their output, which is written once it is full, periodically, or as soon as an error is logged.
+ * Error messages and the stack traces of messages of any level may be written to a separate output, in which case the other output is written first so that lines stay in order.
+ */
+public class BufferedAppender implements Consumer<LogMessage>, AutoCloseable {
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    static final String DEFAULT_TEMPLATE = "[{logger}] {level} | {message}";
+    private static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+    private static final long DEFAULT_FLUSH_MILLIS = 200L;
+
+    private final MessageTemplate template;
+    private final CharsetEncoder encoder;
+    private final StringBuilder builder;
+    private final Output output;
+    private final Output errorOutput;
+    private final ScheduledExecutorService flusher;
+
+    private BufferedAppender(String template, WritableByteChannel output, WritableByteChannel errorOutput, int bufferSize, long flushMillis) {
+        this.template = MessageTemplate.compile(template);
+        encoder = UTF_8.newEncoder().onMalformedInput(CodingErrorAction.REPLACE).onUnmappableCharacter(CodingErrorAction.REPLACE);
+        builder = new StringBuilder();
+        this.output = new Output(output, bufferSize);
+        this.errorOutput = errorOutput == output ? this.output : new Output(errorOutput, bufferSize);
+        flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "Log flusher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        flusher.scheduleWithFixedDelay(this::flush, flushMillis, flushMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Creates an appender writing to the standard output stream, and error messages and stack traces to the standard error stream.
+     * @return The created appender.
+     */
+    public static BufferedAppender toConsole() {
+        return new BufferedAppender(DEFAULT_TEMPLATE, new FileOutputStream(FileDescriptor.out).getChannel(), new FileOutputStream(FileDescriptor.err).getChannel(), DEFAULT_BUFFER_SIZE, DEFAULT_FLUSH_MILLIS);
+    }
+
+    /**
+     * Creates an appender writing every message to the end of the given file.
+     * @param file The file to write to.
+     * @return The created appender.
+     * @throws IOException If the file cannot be opened.
+     */
+    public static BufferedAppender toFile(Path file) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        return new BufferedAppender(DEFAULT_TEMPLATE, channel, channel, DEFAULT_BUFFER_SIZE, DEFAULT_FLUSH_MILLIS);
+    }
+
+    @Override
+    public synchronized void accept(LogMessage message) {
+        builder.setLength(0);
+        template.format(message, builder);
+        builder.append('\n');
+        boolean error = Level.ERROR.equals(message.getLevel());
+        Output target = error ? errorOutput : output;
+        if (target != output) {
+            output.flush();
+        }
+        target.write(builder);
+        if (message.getThrowable().isPresent()) {
+            // Stack traces always go to the error output, like Throwable.printStackTrace() does
+            if (target != errorOutput) {
+                target.flush();
+            }
+            builder.setLength(0);
+            MessageTemplate.formatThrowable(message, builder);
+            errorOutput.write(builder);
+            error = true;
+        }
+        if (error) {
+            errorOutput.flush();
+        }
+    }
+
+    /**
+     * Writes the buffered messages to their outputs.
+     */
+    public synchronized void flush() {
+        output.flush();
+        errorOutput.flush();
+    }
+
+    /**
+     * Writes the buffered messages and stops the periodic flushing.
+     * The outputs are left open since they may be shared with the rest of the process.
+     */
+    @Override
+    public void close() {
+        flusher.shutdown();
+        flush();
+    }
+
+    private class Output {
+        private final WritableByteChannel channel;
+        private final ByteBuffer buffer;
+
+        private Output(WritableByteChannel channel, int bufferSize) {
+            this.channel = channel;
+            buffer = ByteBuffer.allocateDirect(bufferSize);
+        }
+
+        private void write(CharSequence text) {
+            CharBuffer input = CharBuffer.wrap(text);
+            encoder.reset();
+            CoderResult result;
+            while ((result = encoder.encode(input, buffer, true)).isOverflow()) {
+                flush();
+            }
+            while (!result.isError() && (result = encoder.flush(buffer)).isOverflow()) {
+                flush();
+            }
+        }
+
+        private void flush() {
+            buffer.flip();
+            try {
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+            } catch (IOException e) {
+                // The logging system cannot report its own failures
+                e.printStackTrace();
+            } finally {
+                buffer.clear();
+            }
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package atunstall.server.core.impl.logging;
+
+import atunstall.server.core.api.logging.Level;
+import atunstall.server.core.api.logging.LogMessage;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Flattened list of the listeners that receive the messages of a logger, per level.
+ * A plan contains the listeners of the logger and of all its parents, in the order in which they are called, and the flight recorder of the subtree the logger belongs to.
+ * Level filters are evaluated once when the plan is built, so they must only depend on the level they are given.
+ */
+final class DispatchPlan {
+    private static final Level[] LEVELS = Level.values();
+
+    private final int version;
+    private final int mask;
+    private final Consumer<LogMessage>[][] listeners;
+    private final FlightRecorder recorder;
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private DispatchPlan(int version, List<List<Consumer<LogMessage>>> listeners, FlightRecorder recorder) {
+        this.version = version;
+        this.recorder = recorder;
+        this.listeners = new Consumer[LEVELS.length][];
+        int mask = 0;
+        for (int index = 0; index < LEVELS.length; index++) {
+            this.listeners[index] = listeners.get(index).toArray(new Consumer[0]);
+            if (this.listeners[index].length > 0 || (recorder != null && FlightRecorder.isRecorded(LEVELS[index]))) {
+                mask |= 1 << index;
+            }
+        }
+        this.mask = mask;
+    }
+
+    /**
+     * Builds the plan of the given logger.
+     * @param logger The logger whose plan to build.
+     * @param version The listener version of the logger's root.
+     * @return The plan of the logger.
+     */
+    static DispatchPlan build(LoggerImpl logger, int version) {
+        List<List<Consumer<LogMessage>>> listeners = new ArrayList<>();
+        for (Level ignored : LEVELS) {
+            listeners.add(new ArrayList<>());
+        }
+        FlightRecorder recorder = null;
+        for (LoggerImpl current = logger; current != null; current = current.getParent()) {
+            if (recorder == null) {
+                recorder = current.getRecorder();
+            }
+            for (ListenerRegistration registration : current.getListeners().values()) {
+                for (Level level : LEVELS) {
+                    if (registration.getFilter().test(level)) {
+                        listeners.get(level.ordinal()).add(registration.getTarget());
+                    }
+                }
+            }
+        }
+        return new DispatchPlan(version, listeners, recorder);
+    }
+
+    int getVersion() {
+        return version;
+    }
+
+    boolean isEnabled(Level level) {
+        return (mask & (1 << level.ordinal())) != 0;
+    }
+
+    Consumer<LogMessage>[] getListeners(Level level) {
+        return listeners[level.ordinal()];
+    }
+
+    /**
+     * Returns the flight recorder of the nearest logger with one, starting from the logger of this plan.
+     * @return The flight recorder, or null if the logger isn't part of a recorded subtree.
+     */
+    FlightRecorder getRecorder() {
+        return recorder;
+    }
+}
@@ -0,0 +1,54 @@
+package atunstall.server.core.impl.logging;
+
+import atunstall.server.core.api.logging.Level;
+import atunstall.server.core.api.logging.LogMessage;
+
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+/**
+ * Fixed-size ring of the most recent debug and informative messages of a logger subtree that no listener received.
+ * The ring is passed to the listeners of the subtree's next error, and otherwise silently overwritten.
+ * Recorded messages are kept unformatted, so a message is only formatted if it ends up being passed to a listener.
+ * This class must only be used by the logging thread.
+ */
+final class FlightRecorder {
+    private final LogMessageImpl[] records;
+    private int next;
+    private int count;
+
+    FlightRecorder(int size) {
+        records = new LogMessageImpl[Math.max(size, 1)];
+    }
+
+    /**
+     * Checks if messages of the given level are recorded when no listener receives them.
+     * @param level The level to check.
+     * @return True if messages of the level are recorded, false otherwise.
+     */
+    static boolean isRecorded(Level level) {
+        return !Level.WARNING.isMoreSevere(level);
+    }
+
+    void record(LogMessageImpl message) {
+        records[next] = message;
+        next = (next + 1) % records.length;
+        count = Math.min(count + 1, records.length);
+    }
+
+    /**
+     * Passes the recorded messages to the given listeners from the oldest to the newest, and then forgets them.
+     * @param listeners The listeners to pass the messages to.
+     */
+    void dump(Consumer<LogMessage>[] listeners) {
+        for (int index = 0; index < count; index++) {
+            LogMessageImpl record = records[(next - count + index + records.length) % records.length];
+            for (Consumer<LogMessage> listener : listeners) {
+                listener.accept(record);
+            }
+        }
+        Arrays.fill(records, null);
+        next = 0;
+        count = 0;
+    }
+}
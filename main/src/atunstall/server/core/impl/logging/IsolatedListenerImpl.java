@@ -0,0 +1,131 @@
+package atunstall.server.core.impl.logging;
+
+import atunstall.server.core.api.logging.IsolatedListener;
+import atunstall.server.core.api.logging.Level;
+import atunstall.server.core.api.logging.LogMessage;
+import atunstall.server.core.api.logging.OverflowPolicy;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * Passes messages to a listener on a dedicated thread through a bounded queue.
+ * Messages are queued by the logging thread, which only waits for the listener if the policy requires it.
+ */
+class IsolatedListenerImpl implements IsolatedListener, Consumer<LogMessage> {
+    private static final AtomicInteger COUNTER = new AtomicInteger();
+    private static final int BATCH_SIZE = 64;
+
+    private final Consumer<LogMessage> listener;
+    private final OverflowPolicy policy;
+    private final RingBuffer<LogMessage> queue;
+    private final LongAdder delivered;
+    private final LongAdder dropped;
+    private final AtomicLong taken;
+    private final Thread thread;
+    private volatile long lag;
+    private volatile boolean stopped;
+
+    IsolatedListenerImpl(Consumer<LogMessage> listener, int capacity, OverflowPolicy policy) {
+        this.listener = listener;
+        this.policy = policy;
+        queue = new RingBuffer<>(capacity, WaitStrategy.PARK, Integer.getInteger(RootLogger.SAMPLE_RATE_PROPERTY, RootLogger.DEFAULT_SAMPLE_RATE));
+        delivered = new LongAdder();
+        dropped = new LongAdder();
+        taken = new AtomicLong();
+        thread = new Thread(() -> {
+            while (true) {
+                if (queue.drain(this::deliver, BATCH_SIZE) == 0) {
+                    if (stopped && queue.isEmpty()) {
+                        break;
+                    }
+                    queue.await();
+                }
+            }
+        }, "Logging-" + COUNTER.incrementAndGet());
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    @Override
+    public void accept(LogMessage message) {
+        if (!queue.publish(message, Level.ERROR.equals(message.getLevel()) ? OverflowPolicy.BLOCK : policy)) {
+            dropped.increment();
+        }
+    }
+
+    /**
+     * Stops the thread of this listener once the queued messages have been passed to the listener.
+     */
+    void close() {
+        stopped = true;
+        queue.signal();
+    }
+
+    /**
+     * Waits for the thread of this listener to pass the queued messages to the listener, once {@link #close()} has been called.
+     * Messages that are still queued when the deadline is reached are counted as dropped and are not passed to the listener anymore.
+     * @param deadline The {@link System#nanoTime()} after which the remaining messages are dropped.
+     */
+    void await(long deadline) {
+        try {
+            long remaining = deadline - System.nanoTime();
+            if (remaining > 0L) {
+                thread.join(Math.max(TimeUnit.NANOSECONDS.toMillis(remaining), 1L));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (thread.isAlive()) {
+            // Messages taken by the thread from now on are skipped, the sign bit marks the listener as abandoned
+            long count = taken.getAndSet(Long.MIN_VALUE);
+            if (count >= 0L) {
+                dropped.add(queue.getPublishedCount() - count);
+            }
+        }
+    }
+
+    @Override
+    public int getPendingCount() {
+        return queue.size();
+    }
+
+    @Override
+    public long getDeliveredCount() {
+        return delivered.sum();
+    }
+
+    @Override
+    public long getDroppedCount() {
+        return dropped.sum();
+    }
+
+    @Override
+    public long getLag() {
+        return lag;
+    }
+
+    private void deliver(LogMessage message) {
+        if (taken.getAndIncrement() < 0L) {
+            // Already counted as dropped
+            return;
+        }
+        if (OverflowPolicy.DROP_OLDEST.equals(policy) && !Level.ERROR.equals(message.getLevel()) && queue.isOverflowing()) {
+            dropped.increment();
+            return;
+        }
+        try {
+            listener.accept(message);
+        } catch (RuntimeException e) {
+            // The logging system cannot report its own failures
+            e.printStackTrace();
+        }
+        delivered.increment();
+        if (message instanceof LogMessageImpl) {
+            lag = System.currentTimeMillis() - ((LogMessageImpl) message).getTimestamp();
+        }
+    }
+}
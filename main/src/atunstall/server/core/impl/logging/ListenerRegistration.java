@@ -0,0 +1,44 @@
+package atunstall.server.core.impl.logging;
+
+import atunstall.server.core.api.logging.Level;
+import atunstall.server.core.api.logging.LogMessage;
+
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * Listener added to a logger, along with its level filter and the consumer that messages are actually passed to.
+ */
+final class ListenerRegistration {
+    private final Predicate<Level> filter;
+    private final Consumer<LogMessage> target;
+
+    ListenerRegistration(Predicate<Level> filter, Consumer<LogMessage> target) {
+        this.filter = filter;
+        this.target = target;
+    }
+
+    Predicate<Level> getFilter() {
+        return filter;
+    }
+
+    /**
+     * Returns the consumer that messages are passed to, which is either the listener itself or the queue of an isolated listener.
+     * @return The target of the messages.
+     */
+    Consumer<LogMessage> getTarget() {
+        return target;
+    }
+
+    /**
+     * Releases the resources of this registration once the listener is removed.
+     * Must be called while holding {@link RootLogger#listenerLock}.
+     * @param root The root logger of the logger the listener was added to.
+     */
+    void close(RootLogger root) {
+        if (target instanceof IsolatedListenerImpl) {
+            root.isolatedListeners.remove(target);
+            ((IsolatedListenerImpl) target).close();
+        }
+    }
+}
@@ -2,24 +2,50 @@ package atunstall.server.core.impl.logging;
 
 import atunstall.server.core.api.logging.Level;
 import atunstall.server.core.api.logging.LogMessage;
+import atunstall.server.core.impl.event.FlightRecorderEvents;
 
+import java.util.Arrays;
+import java.util.IllegalFormatException;
 import java.util.Optional;
+import java.util.function.Supplier;
 
 public class LogMessageImpl implements LogMessage {
     private final LoggerImpl logger;
     private final Level level;
-    private final String message;
     private final Throwable throwable;
+    private final String pattern;
+    private final Object[] args;
+    private final long timestamp;
+    private final long nanoTime;
+    private Supplier<String> supplier;
+    private volatile String message;
 
     LogMessageImpl(LoggerImpl logger, Level level, String message) {
-        this(logger, level, message, null);
+        this(logger, level, message, (Throwable) null);
     }
 
     LogMessageImpl(LoggerImpl logger, Level level, String message, Throwable throwable) {
+        this(logger, level, message, throwable, null, null, null);
+    }
+
+    LogMessageImpl(LoggerImpl logger, Level level, Supplier<String> supplier, Throwable throwable) {
+        this(logger, level, null, throwable, supplier, null, null);
+    }
+
+    LogMessageImpl(LoggerImpl logger, Level level, String pattern, Object[] args) {
+        this(logger, level, null, null, null, pattern, args);
+    }
+
+    private LogMessageImpl(LoggerImpl logger, Level level, String message, Throwable throwable, Supplier<String> supplier, String pattern, Object[] args) {
         this.logger = logger;
         this.level = level;
         this.message = message;
         this.throwable = throwable;
+        this.supplier = supplier;
+        this.pattern = pattern;
+        this.args = args;
+        timestamp = System.currentTimeMillis();
+        nanoTime = FlightRecorderEvents.LOG_DISPATCH.isEnabled() ? System.nanoTime() : 0L;
     }
 
     @Override
@@ -34,11 +60,76 @@ public class LogMessageImpl implements LogMessage {
 
     @Override
     public String getMessage() {
-        return message;
+        String result = message;
+        if (result == null) {
+            message = result = format();
+        }
+        return result;
+    }
+
+    /**
+     * Builds the deferred message of this log message.
+     * This is only done once a listener asks for the message, usually on the logging thread.
+     * @return The message.
+     */
+    private synchronized String format() {
+        if (message != null) {
+            return message;
+        }
+        String result;
+        if (supplier != null) {
+            try {
+                result = String.valueOf(supplier.get());
+            } catch (RuntimeException e) {
+                result = "Error while building message: " + e;
+            }
+        } else if (pattern != null) {
+            try {
+                result = String.format(pattern, args);
+            } catch (IllegalFormatException e) {
+                result = pattern + " " + Arrays.toString(args);
+            }
+        } else {
+            result = null;
+        }
+        supplier = null;
+        return result;
     }
 
     @Override
     public Optional<Throwable> getThrowable() {
         return Optional.ofNullable(throwable);
     }
+
+    /**
+     * Returns the pattern of this message if it was logged with {@link LoggerImpl#log(Level, String, Object...)}.
+     * @return The pattern, or null if the message wasn't logged with a pattern.
+     */
+    String getPattern() {
+        return pattern;
+    }
+
+    /**
+     * Returns the unformatted arguments of this message if it was logged with a pattern.
+     * @return The arguments, or null if the message wasn't logged with a pattern.
+     */
+    Object[] getArguments() {
+        return args;
+    }
+
+    /**
+     * Returns the time at which this message was logged.
+     * @return The time in milliseconds since the epoch.
+     */
+    long getTimestamp() {
+        return timestamp;
+    }
+
+    /**
+     * Returns the value of {@link System#nanoTime()} when this message was logged, which is only read while dispatch events are recorded.
+     * @return The time in nanoseconds, or 0 if it wasn't read.
+     */
+    long getNanoTime() {
+        return nanoTime;
+    }
 }
@@ -1,28 +1,36 @@
 package atunstall.server.core.impl.logging;
 
+import atunstall.server.core.api.logging.IsolatedListener;
 import atunstall.server.core.api.logging.Level;
 import atunstall.server.core.api.logging.LogMessage;
 import atunstall.server.core.api.logging.Logger;
+import atunstall.server.core.api.logging.OverflowPolicy;
 
 import java.lang.ref.WeakReference;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.function.Consumer;
 import java.util.function.Predicate;
+import java.util.function.Supplier;
 
 public class LoggerImpl implements Logger {
     RootLogger root;
     private final LoggerImpl parent;
     private final String fullName;
-    private final Map<String, WeakReference<Logger>> children;
-    private final Map<Consumer<LogMessage>, Predicate<Level>> listeners;
+    private final ConcurrentMap<String, WeakReference<LoggerImpl>> children;
+    private volatile Map<Consumer<LogMessage>, ListenerRegistration> listeners;
+    private volatile DispatchPlan plan;
+    private volatile FlightRecorder recorder;
 
     LoggerImpl(LoggerImpl parent, String fullName) {
         this.root = parent == null ? null : parent.root;
         this.parent = parent;
         this.fullName = fullName;
-        children = new HashMap<>();
-        listeners = new HashMap<>();
+        children = new ConcurrentHashMap<>();
+        listeners = Collections.emptyMap();
     }
 
     @Override
@@ -32,42 +40,135 @@ public class LoggerImpl implements Logger {
 
     @Override
     public Logger getChild(String name) {
-        Logger logger = null;
-        if (children.containsKey(name)) {
-            logger = children.get(name).get();
+        WeakReference<LoggerImpl> reference = children.get(name);
+        LoggerImpl logger = reference == null ? null : reference.get();
+        if (logger != null) {
+            return logger;
         }
-        if (logger == null) {
-            logger = new LoggerImpl(this, parent == null ? name : String.format("%s/%s", fullName, name));
-            children.put(name, new WeakReference<>(logger));
-        }
-        return logger;
+        // Keeps the logger strongly reachable until it is returned
+        LoggerImpl[] result = new LoggerImpl[1];
+        children.compute(name, (key, current) -> {
+            result[0] = current == null ? null : current.get();
+            if (result[0] != null) {
+                return current;
+            }
+            result[0] = new LoggerImpl(this, parent == null ? name : fullName + '/' + name);
+            return new WeakReference<>(result[0]);
+        });
+        return result[0];
     }
 
     @Override
     public void addListener(Consumer<LogMessage> listener, Predicate<Level> levelFilter) {
-        listeners.put(listener, levelFilter);
+        register(listener, new ListenerRegistration(levelFilter, listener));
+    }
+
+    @Override
+    public IsolatedListener addIsolatedListener(Consumer<LogMessage> listener, Predicate<Level> levelFilter, int capacity, OverflowPolicy policy) {
+        IsolatedListenerImpl isolated = new IsolatedListenerImpl(listener, capacity, policy);
+        synchronized (root.listenerLock) {
+            register(listener, new ListenerRegistration(levelFilter, isolated));
+            root.isolatedListeners.add(isolated);
+        }
+        return isolated;
     }
 
     @Override
     public void removeListener(Consumer<LogMessage> listener) {
-        listeners.remove(listener);
+        synchronized (root.listenerLock) {
+            if (!listeners.containsKey(listener)) {
+                return;
+            }
+            Map<Consumer<LogMessage>, ListenerRegistration> copy = new HashMap<>(listeners);
+            ListenerRegistration registration = copy.remove(listener);
+            listeners = Collections.unmodifiableMap(copy);
+            root.invalidatePlans();
+            registration.close(root);
+        }
+    }
+
+    @Override
+    public boolean isEnabled(Level level) {
+        return getPlan().isEnabled(level);
     }
 
     @Override
     public void log(Level level, String message) {
-        root.log(new LogMessageImpl(this, level, message));
+        if (isEnabled(level)) {
+            root.log(new LogMessageImpl(this, level, message));
+        }
     }
 
     @Override
     public void log(Level level, String message, Throwable throwable) {
-        root.log(new LogMessageImpl(this, level, message, throwable));
+        if (isEnabled(level)) {
+            root.log(new LogMessageImpl(this, level, message, throwable));
+        }
+    }
+
+    @Override
+    public void log(Level level, String pattern, Object... args) {
+        if (isEnabled(level)) {
+            root.log(new LogMessageImpl(this, level, pattern, args));
+        }
+    }
+
+    @Override
+    public void log(Level level, Supplier<String> message) {
+        log(level, message, null);
+    }
+
+    @Override
+    public void log(Level level, Supplier<String> message, Throwable throwable) {
+        if (isEnabled(level)) {
+            root.log(new LogMessageImpl(this, level, message, throwable));
+        }
+    }
+
+    private void register(Consumer<LogMessage> listener, ListenerRegistration registration) {
+        synchronized (root.listenerLock) {
+            Map<Consumer<LogMessage>, ListenerRegistration> copy = new HashMap<>(listeners);
+            ListenerRegistration previous = copy.put(listener, registration);
+            listeners = Collections.unmodifiableMap(copy);
+            root.invalidatePlans();
+            if (previous != null) {
+                previous.close(root);
+            }
+        }
+    }
+
+    FlightRecorder getRecorder() {
+        return recorder;
+    }
+
+    void setRecorder(FlightRecorder recorder) {
+        this.recorder = recorder;
     }
 
     LoggerImpl getParent() {
         return parent;
     }
 
-    void handle(LogMessageImpl message) {
-        listeners.entrySet().stream().filter(e -> e.getValue().test(message.getLevel())).forEach(e -> e.getKey().accept(message));
+    /**
+     * Returns the listeners of this logger.
+     * The returned map is an immutable snapshot which is replaced whenever a listener is added or removed, so it can be read from any thread.
+     * @return The listeners of this logger.
+     */
+    Map<Consumer<LogMessage>, ListenerRegistration> getListeners() {
+        return listeners;
+    }
+
+    /**
+     * Returns the dispatch plan of this logger, rebuilding it if a listener was added or removed since it was built.
+     * Listener maps are replaced before the root's listener version is incremented, so a plan built from outdated maps is always tagged with an outdated version.
+     * @return The dispatch plan.
+     */
+    DispatchPlan getPlan() {
+        DispatchPlan result = plan;
+        int version = root.getListenerVersion();
+        if (result == null || result.getVersion() != version) {
+            plan = result = DispatchPlan.build(this, version);
+        }
+        return result;
     }
 }
@@ -0,0 +1,48 @@
+package atunstall.server.core.impl.logging;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+
+/**
+ * Releases the mappings of memory-mapped buffers without waiting for the buffers to be garbage collected.
+ * A file can only be truncated or deleted safely once it is no longer mapped.
+ */
+final class MappedBuffers {
+    private static final String UNSAFE_CLASS = "sun.misc.Unsafe";
+    private static final MethodHandle INVOKE_CLEANER = load();
+
+    private MappedBuffers() {}
+
+    /**
+     * Unmaps the given buffer.
+     * The buffer and any view of it must not be accessed anymore once this method returned true, doing so would crash the virtual machine.
+     * @param buffer The buffer to unmap.
+     * @return True if the buffer was unmapped, false if unmapping is not supported.
+     */
+    static boolean unmap(MappedByteBuffer buffer) {
+        if (INVOKE_CLEANER == null) {
+            return false;
+        }
+        try {
+            INVOKE_CLEANER.invokeExact((ByteBuffer) buffer);
+            return true;
+        } catch (Throwable e) {
+            return false;
+        }
+    }
+
+    private static MethodHandle load() {
+        try {
+            Class<?> type = Class.forName(UNSAFE_CLASS);
+            Field field = type.getDeclaredField("theUnsafe");
+            field.setAccessible(true);
+            return MethodHandles.publicLookup().findVirtual(type, "invokeCleaner", MethodType.methodType(void.class, ByteBuffer.class)).bindTo(field.get(null));
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return null;
+        }
+    }
+}
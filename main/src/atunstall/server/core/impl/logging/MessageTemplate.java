@@ -0,0 +1,106 @@
+package atunstall.server.core.impl.logging;
+
+import atunstall.server.core.api.logging.LogMessage;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Line template compiled once into a list of segments, used to format log messages without parsing a format string per message.
+ * The template may reference the {@code {logger}}, {@code {level}} and {@code {message}} fields of a message.
+ */
+final class MessageTemplate {
+    private static final String LOGGER = "logger";
+    private static final String LEVEL = "level";
+    private static final String MESSAGE = "message";
+
+    private final Segment[] segments;
+
+    private MessageTemplate(List<Segment> segments) {
+        this.segments = segments.toArray(new Segment[0]);
+    }
+
+    /**
+     * Compiles the given template.
+     * @param template The template to compile.
+     * @return The compiled template.
+     * @throws IllegalArgumentException If the template references an unknown field or contains an unclosed brace.
+     */
+    static MessageTemplate compile(String template) {
+        List<Segment> segments = new ArrayList<>();
+        int index = 0;
+        while (index < template.length()) {
+            int start = template.indexOf('{', index);
+            if (start < 0) {
+                start = template.length();
+            }
+            if (start > index) {
+                String literal = template.substring(index, start);
+                segments.add((message, builder) -> builder.append(literal));
+            }
+            if (start == template.length()) {
+                break;
+            }
+            int end = template.indexOf('}', start);
+            if (end < 0) {
+                throw new IllegalArgumentException("unclosed brace in template " + template);
+            }
+            switch (template.substring(start + 1, end)) {
+                case LOGGER:
+                    segments.add((message, builder) -> builder.append(message.getLogger().getFullName()));
+                    break;
+                case LEVEL:
+                    segments.add((message, builder) -> builder.append(message.getLevel().name()));
+                    break;
+                case MESSAGE:
+                    segments.add((message, builder) -> builder.append(message.getMessage()));
+                    break;
+                default:
+                    throw new IllegalArgumentException("unknown field " + template.substring(start, end + 1) + " in template " + template);
+            }
+            index = end + 1;
+        }
+        return new MessageTemplate(segments);
+    }
+
+    /**
+     * Appends the given message formatted with this template to the given builder.
+     * @param message The message to format.
+     * @param builder The builder to append to.
+     */
+    void format(LogMessage message, StringBuilder builder) {
+        for (Segment segment : segments) {
+            segment.append(message, builder);
+        }
+    }
+
+    /**
+     * Appends a full record for the given message to the given builder, which is the formatted message, a line separator and the stack trace of the message's throwable if it has one.
+     * @param message The message to format.
+     * @param builder The builder to append to.
+     */
+    void formatRecord(LogMessage message, StringBuilder builder) {
+        format(message, builder);
+        builder.append('\n');
+        formatThrowable(message, builder);
+    }
+
+    /**
+     * Appends the stack trace of the given message's throwable to the given builder, if the message has one.
+     * @param message The message to format.
+     * @param builder The builder to append to.
+     */
+    static void formatThrowable(LogMessage message, StringBuilder builder) {
+        message.getThrowable().ifPresent(throwable -> {
+            StringWriter writer = new StringWriter();
+            throwable.printStackTrace(new PrintWriter(writer));
+            builder.append(writer.getBuffer());
+        });
+    }
+
+    private interface Segment {
+        void append(LogMessage message, StringBuilder builder);
+    }
+}
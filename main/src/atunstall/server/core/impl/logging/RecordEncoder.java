@@ -0,0 +1,32 @@
+package atunstall.server.core.impl.logging;
+
+import atunstall.server.core.api.logging.LogMessage;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Encodes log records into the segment files of a {@link RollingFileSink}.
+ * Encoders may keep state per segment, such as a dictionary, which is reset whenever a new segment is started.
+ */
+interface RecordEncoder {
+    /**
+     * Returns the suffix of the segment files written with this encoder.
+     * @return The file suffix.
+     */
+    String getSuffix();
+
+    /**
+     * Resets the state of this encoder and writes the header of a new segment.
+     * @param out The buffer of the new segment.
+     */
+    void startSegment(ByteBuffer out);
+
+    /**
+     * Encodes the given message into the given buffer.
+     * Nothing is written if the record doesn't fit in the remaining space of the buffer.
+     * @param message The message to encode.
+     * @param out The buffer of the current segment.
+     * @return True if the record was written, false if it doesn't fit.
+     */
+    boolean encode(LogMessage message, ByteBuffer out);
+}
@@ -0,0 +1,218 @@
+package atunstall.server.core.impl.logging;
+
+import atunstall.server.core.api.logging.OverflowPolicy;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+/**
+ * Bounded multi-producer single-consumer queue backed by a preallocated array of slots.
+ * Producers claim a sequence number, store their element in the matching slot and then mark the slot as published.
+ * The consumer drains the published slots in batches and releases them to the producers once the whole batch has been handled.
+ * @param <E> The type of the elements.
+ */
+class RingBuffer<E> {
+    private static final long CONSUMER_PARK_NANOS = 10000000L;
+
+    private final Object[] slots;
+    private final AtomicLongArray published;
+    private final int mask;
+    private final WaitStrategy waitStrategy;
+    private final AtomicLong claimed;
+    private final AtomicLong sampled;
+    private final int sampleRate;
+    private volatile long released;
+    private volatile Thread consumer;
+    private volatile boolean consumerWaiting;
+    private long head;
+
+    RingBuffer(int capacity, WaitStrategy waitStrategy, int sampleRate) {
+        int size = Integer.highestOneBit(Math.max(capacity, 2) - 1) << 1;
+        slots = new Object[size];
+        published = new AtomicLongArray(size);
+        for (int index = 0; index < size; index++) {
+            published.set(index, -1L);
+        }
+        mask = size - 1;
+        this.waitStrategy = waitStrategy;
+        claimed = new AtomicLong();
+        sampled = new AtomicLong();
+        this.sampleRate = Math.max(sampleRate, 1);
+    }
+
+    int getCapacity() {
+        return slots.length;
+    }
+
+    /**
+     * Returns the number of elements that have been published since the buffer was created.
+     * @return The number of published elements.
+     */
+    long getPublishedCount() {
+        return claimed.get();
+    }
+
+    /**
+     * Returns the number of elements that have been claimed but not yet released by the consumer.
+     * @return The number of elements in the buffer.
+     */
+    int size() {
+        return (int) (claimed.get() - released);
+    }
+
+    /**
+     * Publishes the given element, waiting for a slot to be released if the buffer is full.
+     * @param element The element to publish.
+     */
+    void publish(E element) {
+        long sequence = claimed.getAndIncrement();
+        while (sequence - released >= slots.length) {
+            waitStrategy.idle();
+        }
+        store(sequence, element);
+    }
+
+    /**
+     * Publishes the given element following the given overflow policy.
+     * The consumer is responsible for discarding elements published with {@link OverflowPolicy#DROP_OLDEST} while {@link #isOverflowing()} returns true.
+     * @param element The element to publish.
+     * @param policy The overflow policy to follow.
+     * @return True if the element was published, false if it was dropped.
+     */
+    boolean publish(E element, OverflowPolicy policy) {
+        switch (policy) {
+            case DROP_NEWEST:
+                return offer(element);
+            case SAMPLE:
+                return (size() < slots.length / 2 || sampled.getAndIncrement() % sampleRate == 0) && offer(element);
+            default:
+                publish(element);
+                return true;
+        }
+    }
+
+    /**
+     * Checks if producers are waiting for slots to be released.
+     * @return True if the buffer is overflowing, false otherwise.
+     */
+    boolean isOverflowing() {
+        return size() >= slots.length;
+    }
+
+    /**
+     * Publishes the given element if the buffer isn't full.
+     * @param element The element to publish.
+     * @return True if the element was published, false if the buffer is full.
+     */
+    boolean offer(E element) {
+        long sequence;
+        do {
+            sequence = claimed.get();
+            if (sequence - released >= slots.length) {
+                return false;
+            }
+        } while (!claimed.compareAndSet(sequence, sequence + 1));
+        store(sequence, element);
+        return true;
+    }
+
+    /**
+     * Publishes the given elements as a single batch with a single claim, if the buffer has room for all of them.
+     * @param elements The array containing the elements to publish.
+     * @param count The number of elements to publish from the start of the array.
+     * @return True if the elements were published, false if the buffer doesn't have room for all of them.
+     */
+    boolean offerAll(E[] elements, int count) {
+        long sequence;
+        do {
+            sequence = claimed.get();
+            if (sequence + count - released > slots.length) {
+                return false;
+            }
+        } while (!claimed.compareAndSet(sequence, sequence + count));
+        for (int index = 0; index < count; index++) {
+            int slot = (int) (sequence + index) & mask;
+            slots[slot] = elements[index];
+            published.lazySet(slot, sequence + index);
+        }
+        if (consumerWaiting) {
+            LockSupport.unpark(consumer);
+        }
+        return true;
+    }
+
+    private void store(long sequence, E element) {
+        int index = (int) sequence & mask;
+        slots[index] = element;
+        published.lazySet(index, sequence);
+        if (consumerWaiting) {
+            LockSupport.unpark(consumer);
+        }
+    }
+
+    /**
+     * Passes the published elements to the given handler, in order, until an unpublished slot is reached or the limit is reached.
+     * This method must only be called by the consumer thread.
+     * @param handler The handler of the elements.
+     * @param limit The maximum number of elements to drain.
+     * @return The number of drained elements.
+     */
+    @SuppressWarnings("unchecked")
+    int drain(Consumer<? super E> handler, int limit) {
+        long start = head;
+        long sequence = start;
+        try {
+            while (sequence - start < limit && published.get((int) sequence & mask) == sequence) {
+                int index = (int) sequence & mask;
+                E element = (E) slots[index];
+                slots[index] = null;
+                sequence++;
+                handler.accept(element);
+            }
+        } finally {
+            if (sequence != start) {
+                head = sequence;
+                released = sequence;
+            }
+        }
+        return (int) (sequence - start);
+    }
+
+    /**
+     * Checks if every claimed slot has been drained.
+     * This method must only be called by the consumer thread.
+     * @return True if the buffer is empty, false otherwise.
+     */
+    boolean isEmpty() {
+        return claimed.get() == head;
+    }
+
+    /**
+     * Waits for elements to be published.
+     * This method must only be called by the consumer thread.
+     */
+    void await() {
+        if (waitStrategy != WaitStrategy.PARK) {
+            waitStrategy.idle();
+            return;
+        }
+        consumer = Thread.currentThread();
+        consumerWaiting = true;
+        if (isEmpty()) {
+            LockSupport.parkNanos(this, CONSUMER_PARK_NANOS);
+        }
+        consumerWaiting = false;
+    }
+
+    /**
+     * Wakes the consumer up if it is waiting for elements.
+     */
+    void signal() {
+        Thread thread = consumer;
+        if (thread != null) {
+            LockSupport.unpark(thread);
+        }
+    }
+}
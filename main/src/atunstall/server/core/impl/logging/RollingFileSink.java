@@ -0,0 +1,218 @@
+package atunstall.server.core.impl.logging;
+
+import atunstall.server.core.api.Module;
+import atunstall.server.core.api.Version;
+import atunstall.server.core.api.logging.Level;
+import atunstall.server.core.api.logging.LogMessage;
+import atunstall.server.core.api.logging.Logger;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Log listener writing records into memory-mapped segment files.
+ * The sink is only enabled if the {@value #FILE_PROPERTY} system property is set to the base path of the segment files.
+ * A new segment is started once the current one is full or older than the rollover interval, which is checked whenever a record is written.
+ * The next segment is always created and mapped in the background ahead of time, and closed segments are unmapped, truncated to their content and optionally compressed in the background too.
+ * Records are written as text lines by default, or in the compact binary format of {@link BinaryRecordEncoder} if the format property is set to {@value #BINARY_FORMAT}.
+ * Records larger than a whole segment are dropped.
+ */
+@Module
+public class RollingFileSink implements Consumer<LogMessage> {
+    private static final String FILE_PROPERTY = "atunstall.server.core.logging.file";
+    private static final String SEGMENT_SIZE_PROPERTY = "atunstall.server.core.logging.file.size";
+    private static final String INTERVAL_PROPERTY = "atunstall.server.core.logging.file.interval";
+    private static final String COMPRESS_PROPERTY = "atunstall.server.core.logging.file.compress";
+    private static final String LEVEL_PROPERTY = "atunstall.server.core.logging.file.level";
+    private static final String FORMAT_PROPERTY = "atunstall.server.core.logging.file.format";
+    private static final String BINARY_FORMAT = "binary";
+    private static final long DEFAULT_SEGMENT_SIZE = 64L * 1024L * 1024L;
+    private static final long DEFAULT_INTERVAL = TimeUnit.DAYS.toMillis(1L);
+    private static final int PAGE_SIZE = 4096;
+    private static final DateTimeFormatter TIMESTAMP = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss");
+    private static final String COMPRESSED_SUFFIX = ".gz";
+
+    private final Logger logger;
+    private final Path base;
+    private final String prefix;
+    private final int segmentSize;
+    private final long interval;
+    private final boolean compress;
+    private final RecordEncoder encoder;
+    private final ExecutorService background;
+    private Segment current;
+    private Future<Segment> next;
+    private int sequence;
+    private boolean closed;
+
+    public RollingFileSink(@Version(major = 1, minor = 2) Logger logger) {
+        this.logger = logger.getChild("Logging");
+        String file = System.getProperty(FILE_PROPERTY);
+        base = file == null ? null : Paths.get(file).toAbsolutePath();
+        prefix = base == null ? null : base.getFileName() + "." + LocalDateTime.now().format(TIMESTAMP) + ".";
+        segmentSize = (int) Math.min(Long.getLong(SEGMENT_SIZE_PROPERTY, DEFAULT_SEGMENT_SIZE), Integer.MAX_VALUE);
+        interval = Long.getLong(INTERVAL_PROPERTY, DEFAULT_INTERVAL);
+        compress = Boolean.getBoolean(COMPRESS_PROPERTY);
+        encoder = BINARY_FORMAT.equals(System.getProperty(FORMAT_PROPERTY)) ? new BinaryRecordEncoder() : new TextRecordEncoder(MessageTemplate.compile(BufferedAppender.DEFAULT_TEMPLATE));
+        background = base == null ? null : Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "Log segments");
+            thread.setDaemon(true);
+            return thread;
+        });
+        if (base == null) {
+            return;
+        }
+        try {
+            Files.createDirectories(base.getParent());
+            current = open(sequence++);
+            encoder.startSegment(current.buffer);
+        } catch (IOException e) {
+            this.logger.log(Level.WARNING, "Error while creating log file in " + base.getParent(), e);
+            background.shutdown();
+            return;
+        }
+        preallocate();
+        Level minimum = Level.valueOf(System.getProperty(LEVEL_PROPERTY, Level.DEBUG.name()));
+        logger.addListener(this, minimum::isMoreSevere);
+        Runtime.getRuntime().addShutdownHook(new Thread(this::close, "Log file shutdown"));
+    }
+
+    @Override
+    public synchronized void accept(LogMessage message) {
+        if (closed) {
+            return;
+        }
+        if (System.currentTimeMillis() - current.openedAt >= interval) {
+            roll();
+        }
+        if (!encoder.encode(message, current.buffer)) {
+            roll();
+            if (!closed) {
+                encoder.encode(message, current.buffer);
+            }
+        }
+    }
+
+    /**
+     * Closes the current segment and deletes the preallocated one.
+     * Records received after this method is called are discarded.
+     */
+    public synchronized void close() {
+        if (closed || current == null) {
+            return;
+        }
+        closed = true;
+        background.shutdown();
+        try {
+            background.awaitTermination(1L, TimeUnit.MINUTES);
+            if (next.isDone() && !next.isCancelled()) {
+                Segment unused = next.get();
+                unused.channel.close();
+                if (unmap(unused)) {
+                    Files.deleteIfExists(unused.path);
+                }
+            }
+        } catch (InterruptedException | ExecutionException | IOException ignored) {}
+        finish(current);
+    }
+
+    private void roll() {
+        Segment previous = current;
+        try {
+            current = next.get();
+        } catch (InterruptedException | ExecutionException e) {
+            closed = true;
+            logger.log(Level.WARNING, "Error while preallocating the next log file, file logging is disabled", e);
+            background.execute(() -> finish(previous));
+            background.shutdown();
+            return;
+        }
+        current.openedAt = System.currentTimeMillis();
+        encoder.startSegment(current.buffer);
+        preallocate();
+        background.execute(() -> finish(previous));
+    }
+
+    private void preallocate() {
+        int index = sequence++;
+        next = background.submit(() -> open(index));
+    }
+
+    private Segment open(int index) throws IOException {
+        Path path = base.resolveSibling(String.format("%s%04d%s", prefix, index, encoder.getSuffix()));
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0L, segmentSize);
+        // Touches every page so that writers never wait for the file system to allocate one
+        for (int position = 0; position < segmentSize; position += PAGE_SIZE) {
+            buffer.put(position, (byte) 0);
+        }
+        return new Segment(path, channel, buffer);
+    }
+
+    private void finish(Segment segment) {
+        try {
+            int length = segment.buffer.position();
+            segment.buffer.force();
+            if (!unmap(segment)) {
+                segment.channel.close();
+                return;
+            }
+            segment.channel.truncate(length);
+            segment.channel.close();
+            if (compress) {
+                Path compressed = segment.path.resolveSibling(segment.path.getFileName() + COMPRESSED_SUFFIX);
+                try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(compressed))) {
+                    Files.copy(segment.path, out);
+                }
+                Files.delete(segment.path);
+            }
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Error while closing log file " + segment.path, e);
+        }
+    }
+
+    /**
+     * Drops the buffer of a segment and unmaps it, after which the segment file may be truncated or deleted.
+     * If the buffer cannot be unmapped, the file must be left as is since it stays mapped until the buffer is garbage collected.
+     * @param segment The segment to unmap, whose buffer must not be used anymore.
+     * @return True if the segment was unmapped, false otherwise.
+     */
+    private boolean unmap(Segment segment) {
+        MappedByteBuffer buffer = segment.buffer;
+        segment.buffer = null;
+        if (MappedBuffers.unmap(buffer)) {
+            return true;
+        }
+        logger.log(Level.WARNING, "Cannot unmap log file %s, leaving it at its preallocated size", segment.path);
+        return false;
+    }
+
+    private static class Segment {
+        private final Path path;
+        private final FileChannel channel;
+        private MappedByteBuffer buffer;
+        private long openedAt;
+
+        private Segment(Path path, FileChannel channel, MappedByteBuffer buffer) {
+            this.path = path;
+            this.channel = channel;
+            this.buffer = buffer;
+            openedAt = System.currentTimeMillis();
+        }
+    }
+}
@@ -2,41 +2,118 @@ package atunstall.server.core.impl.logging;
 
 import atunstall.server.core.api.Module;
 import atunstall.server.core.api.logging.Level;
+import atunstall.server.core.api.logging.LogMessage;
+import atunstall.server.core.api.logging.OverflowPolicy;
+import atunstall.server.core.impl.event.FlightRecorderEvents;
 
-import java.util.concurrent.BlockingDeque;
-import java.util.concurrent.LinkedBlockingDeque;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
 
 @Module
 public class RootLogger extends LoggerImpl {
+    private static final String CAPACITY_PROPERTY = "atunstall.server.core.logging.capacity";
+    private static final String WAIT_STRATEGY_PROPERTY = "atunstall.server.core.logging.wait";
+    private static final int DEFAULT_CAPACITY = 8192;
+    private static final String POLICY_PROPERTY_PREFIX = "atunstall.server.core.logging.policy.";
+    static final String SAMPLE_RATE_PROPERTY = "atunstall.server.core.logging.sample";
+    private static final String SUMMARY_INTERVAL_PROPERTY = "atunstall.server.core.logging.summary";
+    private static final String RECORDER_PROPERTY = "atunstall.server.core.logging.recorder";
+    private static final String RECORDER_SIZE_PROPERTY = "atunstall.server.core.logging.recorder.size";
+    private static final String THREAD_BATCH_PROPERTY = "atunstall.server.core.logging.batch";
+    private static final String THREAD_BATCH_DELAY_PROPERTY = "atunstall.server.core.logging.batch.delay";
+    private static final String ISOLATED_TIMEOUT_PROPERTY = "atunstall.server.core.logging.isolated.timeout";
+    private static final int BATCH_SIZE = 256;
+    static final int DEFAULT_SAMPLE_RATE = 10;
+    private static final long DEFAULT_SUMMARY_INTERVAL = TimeUnit.SECONDS.toMillis(10L);
+    private static final long DEFAULT_THREAD_BATCH_DELAY = 10L;
+    private static final int DEFAULT_RECORDER_SIZE = 256;
+    private static final long DEFAULT_ISOLATED_TIMEOUT = TimeUnit.SECONDS.toMillis(5L);
+    private static final long QUEUE_SAMPLE_INTERVAL = TimeUnit.SECONDS.toNanos(1L);
+    private static final Level[] LEVELS = Level.values();
+
+    final Object listenerLock = new Object();
+    /**
+     * The isolated listeners added to the loggers of this tree, guarded by {@link #listenerLock}.
+     */
+    final Set<IsolatedListenerImpl> isolatedListeners = new HashSet<>();
     private final Object lock = new Object();
     private final Thread thread;
-    private final BlockingDeque<LogMessageImpl> queue;
-    private boolean stopped;
+    private final RingBuffer<LogMessageImpl> queue;
+    private final OverflowPolicy[] policies;
+    private final LongAdder[] dropped;
+    private final long[] reported;
+    private final LoggerImpl logger;
+    private final ThreadLocal<ThreadBatch> threadBatches;
+    private final Queue<ThreadBatch> batches;
+    private final List<LoggerImpl> recorded;
+    private volatile boolean stopped;
+    private boolean terminated;
+    private volatile int listenerVersion;
 
     public RootLogger() {
         super(null, "");
         root = this;
-        queue = new LinkedBlockingDeque<>();
+        queue = new RingBuffer<>(Integer.getInteger(CAPACITY_PROPERTY, DEFAULT_CAPACITY), WaitStrategy.valueOf(System.getProperty(WAIT_STRATEGY_PROPERTY, WaitStrategy.PARK.name())), Integer.getInteger(SAMPLE_RATE_PROPERTY, DEFAULT_SAMPLE_RATE));
+        policies = new OverflowPolicy[LEVELS.length];
+        dropped = new LongAdder[LEVELS.length];
+        for (Level level : LEVELS) {
+            String policy = System.getProperty(POLICY_PROPERTY_PREFIX + level.name().toLowerCase(Locale.ROOT), OverflowPolicy.BLOCK.name());
+            policies[level.ordinal()] = Level.ERROR.equals(level) ? OverflowPolicy.BLOCK : OverflowPolicy.valueOf(policy.toUpperCase(Locale.ROOT));
+            dropped[level.ordinal()] = new LongAdder();
+        }
+        reported = new long[LEVELS.length];
+        logger = (LoggerImpl) getChild("Logging");
+        recorded = new ArrayList<>();
+        String recorders = System.getProperty(RECORDER_PROPERTY);
+        if (recorders != null) {
+            for (String name : recorders.split(",")) {
+                addFlightRecorder(name.trim(), Integer.getInteger(RECORDER_SIZE_PROPERTY, DEFAULT_RECORDER_SIZE));
+            }
+        }
+        long summaryInterval = TimeUnit.MILLISECONDS.toNanos(Long.getLong(SUMMARY_INTERVAL_PROPERTY, DEFAULT_SUMMARY_INTERVAL));
+        int threadBatchSize = Math.min(Integer.getInteger(THREAD_BATCH_PROPERTY, 0), queue.getCapacity());
+        long threadBatchDelay = TimeUnit.MILLISECONDS.toNanos(Long.getLong(THREAD_BATCH_DELAY_PROPERTY, DEFAULT_THREAD_BATCH_DELAY));
+        batches = new ConcurrentLinkedQueue<>();
+        threadBatches = threadBatchSize <= 1 ? null : ThreadLocal.withInitial(() -> {
+            ThreadBatch batch = new ThreadBatch(this, Thread.currentThread(), threadBatchSize);
+            batches.add(batch);
+            return batch;
+        });
         thread = new Thread(() -> {
-            while (!stopped || queue.size() > 0) {
-                try {
-                    /*synchronized (lock) {
-                        while (queue.size() == 0) {
-                            if (stopped) {
-                                break;
-                            }
-                            lock.wait();
-                        }
-                    }*/
-                    LogMessageImpl message = queue.takeFirst();
-                    LoggerImpl current = message.getLogger();
-                    while (current != null) {
-                        current.handle(message);
-                        current = current.getParent();
+            long lastSummary = System.nanoTime();
+            long lastFlush = System.nanoTime();
+            long lastSample = System.nanoTime();
+            while (true) {
+                boolean flushed = true;
+                if (threadBatches != null && (stopped || System.nanoTime() - lastFlush >= threadBatchDelay / 2)) {
+                    lastFlush = System.nanoTime();
+                    flushed = flushBatches(threadBatchDelay, stopped);
+                }
+                if (queue.drain(this::dispatchOrDrop, BATCH_SIZE) == 0) {
+                    if (stopped && flushed && queue.isEmpty()) {
+                        break;
                     }
-                } catch (InterruptedException ignored) {}
+                    queue.await();
+                }
+                if (System.nanoTime() - lastSummary >= summaryInterval) {
+                    lastSummary = System.nanoTime();
+                    reportDrops();
+                }
+                if (System.nanoTime() - lastSample >= QUEUE_SAMPLE_INTERVAL && FlightRecorderEvents.LOG_QUEUE.isEnabled()) {
+                    lastSample = System.nanoTime();
+                    FlightRecorderEvents.LOG_QUEUE.commit(queue.size(), queue.getCapacity(), getDroppedCount());
+                }
             }
-            handle(new LogMessageImpl(this, Level.DEBUG, "Logging thread stopped"));
+            reportDrops();
+            dispatch(new LogMessageImpl(this, Level.DEBUG, "Logging thread stopped"));
             synchronized (lock) {
                 stopped = false;
                 lock.notifyAll();
@@ -46,19 +123,205 @@ public class RootLogger extends LoggerImpl {
         thread.start();
     }
 
+    /**
+     * Stops the logging thread once every queued message is dispatched, then stops the threads of the isolated listeners once they delivered their queued messages.
+     * Isolated listeners get a shared timeout to deliver them, after which their remaining messages are counted as dropped.
+     * Calling this method again has no effect.
+     */
     public void terminate() {
         synchronized (lock) {
+            if (terminated) {
+                return;
+            }
+            terminated = true;
             stopped = true;
-            thread.interrupt();
+            queue.signal();
             while (stopped) {
                 try {
                     lock.wait();
                 } catch (InterruptedException ignored) {}
             }
         }
+        List<IsolatedListenerImpl> listeners;
+        synchronized (listenerLock) {
+            listeners = new ArrayList<>(isolatedListeners);
+        }
+        listeners.forEach(IsolatedListenerImpl::close);
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(Long.getLong(ISOLATED_TIMEOUT_PROPERTY, DEFAULT_ISOLATED_TIMEOUT));
+        for (IsolatedListenerImpl listener : listeners) {
+            listener.await(deadline);
+        }
+    }
+
+    /**
+     * Records the debug and informative messages of the given logger subtree that no listener receives, and passes them to the listeners of the subtree's next error.
+     * @param fullName The full name of the logger at the root of the subtree, with an empty name designating the root logger.
+     * @param size The maximum number of recorded messages.
+     */
+    public void addFlightRecorder(String fullName, int size) {
+        LoggerImpl target = this;
+        for (String name : fullName.split("/")) {
+            if (!name.isEmpty()) {
+                target = (LoggerImpl) target.getChild(name);
+            }
+        }
+        synchronized (listenerLock) {
+            // Keeps the logger, and therefore its recorder, reachable
+            recorded.add(target);
+            target.setRecorder(new FlightRecorder(size));
+            invalidatePlans();
+        }
+    }
+
+    /**
+     * Returns the number of messages of the given level dropped since this logger was created.
+     * @param level The level of the dropped messages.
+     * @return The number of dropped messages.
+     */
+    public long getDroppedCount(Level level) {
+        return dropped[level.ordinal()].sum();
+    }
+
+    private long getDroppedCount() {
+        long result = 0L;
+        for (LongAdder counter : dropped) {
+            result += counter.sum();
+        }
+        return result;
     }
 
     void log(LogMessageImpl message) {
-        queue.add(message);
+        if (Thread.currentThread() == thread) {
+            if (!queue.offer(message)) {
+                // Waiting would deadlock since only this thread can release slots
+                dispatch(message);
+            }
+        } else if (threadBatches != null) {
+            threadBatches.get().add(message);
+        } else {
+            publish(message);
+        }
+    }
+
+    /**
+     * Publishes a batch of messages logged by a single thread, keeping their order.
+     * The batch is published with a single claim if the queue has room for it, otherwise its messages are published one by one following their overflow policy.
+     * @param messages The array containing the messages.
+     * @param count The number of messages to publish from the start of the array.
+     * @param fromLoggingThread Whether this method is called by the logging thread, in which case the batch is left as it is if the queue doesn't have room for it.
+     * @return True if the batch was published, false otherwise.
+     */
+    boolean publishBatch(LogMessageImpl[] messages, int count, boolean fromLoggingThread) {
+        if (queue.offerAll(messages, count)) {
+            return true;
+        }
+        if (fromLoggingThread) {
+            return false;
+        }
+        for (int index = 0; index < count; index++) {
+            publish(messages[index]);
+        }
+        return true;
+    }
+
+    /**
+     * Publishes a message following the overflow policy of its level, dropping it if the policy requires it.
+     * @param message The message to publish.
+     */
+    private void publish(LogMessageImpl message) {
+        if (!FlightRecorderEvents.LOG_ENQUEUE.isEnabled()) {
+            if (!queue.publish(message, policies[message.getLevel().ordinal()])) {
+                drop(message);
+            }
+            return;
+        }
+        long start = System.nanoTime();
+        boolean published = queue.publish(message, policies[message.getLevel().ordinal()]);
+        FlightRecorderEvents.LOG_ENQUEUE.commit(message.getLevel().name(), System.nanoTime() - start, !published);
+        if (!published) {
+            drop(message);
+        }
+    }
+
+    /**
+     * Publishes the thread batches that are too old or whose owner died, and forgets the batches of dead threads.
+     * @param delay The maximum age of a batch in nanoseconds.
+     * @param force Whether to publish every batch regardless of its age.
+     * @return True if every batch that had to be published was published, false otherwise.
+     */
+    private boolean flushBatches(long delay, boolean force) {
+        boolean result = true;
+        for (ThreadBatch batch : batches) {
+            if (!batch.flush(delay, force)) {
+                result = false;
+            } else if (batch.isAbandoned()) {
+                batches.remove(batch);
+            }
+        }
+        return result;
+    }
+
+    int getListenerVersion() {
+        return listenerVersion;
+    }
+
+    /**
+     * Invalidates the dispatch plans of every logger of this tree.
+     * Must be called while holding {@link #listenerLock}.
+     */
+    void invalidatePlans() {
+        listenerVersion++;
+    }
+
+    private void dispatchOrDrop(LogMessageImpl message) {
+        // Producers are waiting for room, so the oldest messages that may be dropped make room for them
+        if (OverflowPolicy.DROP_OLDEST.equals(policies[message.getLevel().ordinal()]) && queue.isOverflowing()) {
+            drop(message);
+        } else {
+            dispatch(message);
+        }
+    }
+
+    private void drop(LogMessageImpl message) {
+        dropped[message.getLevel().ordinal()].increment();
+    }
+
+    /**
+     * Logs how many messages were dropped since the last report, if any were.
+     * This method must only be called by the logging thread.
+     */
+    private void reportDrops() {
+        StringBuilder builder = new StringBuilder();
+        for (Level level : LEVELS) {
+            long total = dropped[level.ordinal()].sum();
+            if (total > reported[level.ordinal()]) {
+                builder.append(builder.length() == 0 ? "" : ", ").append(total - reported[level.ordinal()]).append(' ').append(level.name());
+                reported[level.ordinal()] = total;
+            }
+        }
+        if (builder.length() > 0) {
+            dispatch(new LogMessageImpl(logger, Level.WARNING, "Dropped " + builder + " messages since the last report because the logging queue was full"));
+        }
+    }
+
+    private void dispatch(LogMessageImpl message) {
+        if (message.getNanoTime() != 0L && FlightRecorderEvents.LOG_DISPATCH.isEnabled()) {
+            FlightRecorderEvents.LOG_DISPATCH.commit(message.getLogger().getFullName(), message.getLevel().name(), System.nanoTime() - message.getNanoTime());
+        }
+        DispatchPlan plan = message.getLogger().getPlan();
+        Consumer<LogMessage>[] listeners = plan.getListeners(message.getLevel());
+        FlightRecorder recorder = plan.getRecorder();
+        if (recorder != null) {
+            if (listeners.length == 0 && FlightRecorder.isRecorded(message.getLevel())) {
+                recorder.record(message);
+                return;
+            }
+            if (Level.ERROR.equals(message.getLevel())) {
+                recorder.dump(listeners);
+            }
+        }
+        for (Consumer<LogMessage> listener : listeners) {
+            listener.accept(message);
+        }
     }
 }
@@ -0,0 +1,49 @@
+package atunstall.server.core.impl.logging;
+
+import atunstall.server.core.api.logging.LogMessage;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+
+/**
+ * Encodes records as UTF-8 lines formatted with a {@link MessageTemplate}.
+ */
+final class TextRecordEncoder implements RecordEncoder {
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final String SUFFIX = ".log";
+
+    private final MessageTemplate template;
+    private final CharsetEncoder encoder;
+    private final StringBuilder builder;
+
+    TextRecordEncoder(MessageTemplate template) {
+        this.template = template;
+        encoder = UTF_8.newEncoder().onMalformedInput(CodingErrorAction.REPLACE).onUnmappableCharacter(CodingErrorAction.REPLACE);
+        builder = new StringBuilder();
+    }
+
+    @Override
+    public String getSuffix() {
+        return SUFFIX;
+    }
+
+    @Override
+    public void startSegment(ByteBuffer out) {}
+
+    @Override
+    public boolean encode(LogMessage message, ByteBuffer out) {
+        builder.setLength(0);
+        template.formatRecord(message, builder);
+        int start = out.position();
+        CharBuffer input = CharBuffer.wrap(builder);
+        encoder.reset();
+        if (encoder.encode(input, out, true).isOverflow() || encoder.flush(out).isOverflow()) {
+            out.position(start);
+            return false;
+        }
+        return true;
+    }
+}
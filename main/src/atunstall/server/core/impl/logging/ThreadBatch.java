@@ -0,0 +1,87 @@
+package atunstall.server.core.impl.logging;
+
+import atunstall.server.core.api.logging.Level;
+
+import java.lang.ref.WeakReference;
+import java.util.Arrays;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Messages logged by a single thread that haven't been published to the logging queue yet.
+ * The owner thread publishes the batch once it is full or an error is logged, and the logging thread publishes batches that are too old or whose owner died.
+ */
+final class ThreadBatch {
+    private final RootLogger root;
+    private final WeakReference<Thread> owner;
+    private final LogMessageImpl[] messages;
+    private final ReentrantLock lock;
+    private int count;
+    private long firstNanos;
+
+    ThreadBatch(RootLogger root, Thread owner, int size) {
+        this.root = root;
+        this.owner = new WeakReference<>(owner);
+        messages = new LogMessageImpl[size];
+        lock = new ReentrantLock();
+    }
+
+    /**
+     * Adds the given message to this batch, publishing the batch if it is full or the message is an error.
+     * This method must only be called by the owner thread.
+     * @param message The message to add.
+     */
+    void add(LogMessageImpl message) {
+        lock.lock();
+        try {
+            if (count == 0) {
+                firstNanos = System.nanoTime();
+            }
+            messages[count++] = message;
+            if (count == messages.length || Level.ERROR.equals(message.getLevel())) {
+                root.publishBatch(messages, count, false);
+                clear();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Publishes this batch if it is older than the given delay, if its owner died or if it is forced to.
+     * This method must only be called by the logging thread, which never waits for the owner thread or the queue.
+     * @param delay The maximum age of a batch in nanoseconds.
+     * @param force Whether to publish the batch regardless of its age.
+     * @return True if this batch is now empty, false if it could not be published yet.
+     */
+    boolean flush(long delay, boolean force) {
+        if (!lock.tryLock()) {
+            return false;
+        }
+        try {
+            if (count == 0 || !(force || owner.get() == null || !owner.get().isAlive() || System.nanoTime() - firstNanos >= delay)) {
+                return count == 0;
+            }
+            if (root.publishBatch(messages, count, true)) {
+                clear();
+                return true;
+            }
+            return false;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Checks if the owner of this batch died, in which case the batch can be forgotten once it is empty.
+     * @return True if the owner died, false otherwise.
+     */
+    boolean isAbandoned() {
+        Thread thread = owner.get();
+        return thread == null || !thread.isAlive();
+    }
+
+    private void clear() {
+        Arrays.fill(messages, 0, count, null);
+        count = 0;
+    }
+}
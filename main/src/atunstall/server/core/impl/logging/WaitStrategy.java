@@ -0,0 +1,43 @@
+package atunstall.server.core.impl.logging;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Determines how threads wait on the logging ring buffer.
+ * Producers wait when the buffer is full and the logging thread waits when the buffer is empty.
+ */
+enum WaitStrategy {
+    /**
+     * Busy-spins, giving the lowest latency at the cost of a fully used core per waiting thread.
+     */
+    SPIN {
+        @Override
+        void idle() {
+            Thread.onSpinWait();
+        }
+    },
+
+    /**
+     * Yields to other threads between checks.
+     */
+    YIELD {
+        @Override
+        void idle() {
+            Thread.yield();
+        }
+    },
+
+    /**
+     * Parks for a short time between checks, the logging thread is woken up as soon as a message is published.
+     */
+    PARK {
+        @Override
+        void idle() {
+            LockSupport.parkNanos(PARK_NANOS);
+        }
+    };
+
+    private static final long PARK_NANOS = 50000L;
+
+    abstract void idle();
+}
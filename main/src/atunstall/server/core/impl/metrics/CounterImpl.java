@@ -0,0 +1,27 @@
+package atunstall.server.core.impl.metrics;
+
+import atunstall.server.core.api.metrics.Counter;
+
+import java.util.concurrent.atomic.LongAdder;
+
+class CounterImpl implements Counter {
+    private final LongAdder value = new LongAdder();
+
+    @Override
+    public void increment() {
+        value.increment();
+    }
+
+    @Override
+    public void add(long amount) {
+        if (amount < 0L) {
+            throw new IllegalArgumentException("negative amount " + amount);
+        }
+        value.add(amount);
+    }
+
+    @Override
+    public long get() {
+        return value.sum();
+    }
+}
@@ -0,0 +1,30 @@
+package atunstall.server.core.impl.metrics;
+
+import atunstall.server.core.api.metrics.Gauge;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+class GaugeImpl implements Gauge, LongSupplier {
+    private final AtomicLong value = new AtomicLong();
+
+    @Override
+    public void set(long value) {
+        this.value.set(value);
+    }
+
+    @Override
+    public void add(long amount) {
+        value.addAndGet(amount);
+    }
+
+    @Override
+    public long get() {
+        return value.get();
+    }
+
+    @Override
+    public long getAsLong() {
+        return value.get();
+    }
+}
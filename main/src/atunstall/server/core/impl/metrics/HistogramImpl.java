@@ -0,0 +1,77 @@
+package atunstall.server.core.impl.metrics;
+
+import atunstall.server.core.api.metrics.Histogram;
+import atunstall.server.core.api.metrics.HistogramSnapshot;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Histogram counting values in log-linear buckets.
+ * Values below {@code 2 * SUB_BUCKETS} have their own bucket, and every larger power of two range is split into {@code SUB_BUCKETS} buckets of equal width.
+ * The buckets are striped by thread so that threads recording similar values don't contend on the same counters.
+ */
+class HistogramImpl implements Histogram {
+    private static final int SUB_BUCKET_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    static final int BUCKETS = 2 * SUB_BUCKETS + (Long.SIZE - 2 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+    private final int stripeMask;
+    private final AtomicLongArray counts;
+    private final LongAdder sum;
+
+    HistogramImpl(int stripes) {
+        stripeMask = stripes - 1;
+        counts = new AtomicLongArray(stripes * BUCKETS);
+        sum = new LongAdder();
+    }
+
+    @Override
+    public void record(long value) {
+        value = Math.max(value, 0L);
+        int stripe = (int) Thread.currentThread().getId() & stripeMask;
+        counts.getAndIncrement(stripe * BUCKETS + getBucket(value));
+        sum.add(value);
+    }
+
+    @Override
+    public void recordSince(long start) {
+        record(System.nanoTime() - start);
+    }
+
+    @Override
+    public HistogramSnapshot snapshot() {
+        long[] result = new long[BUCKETS];
+        for (int index = 0; index < counts.length(); index++) {
+            result[index % BUCKETS] += counts.get(index);
+        }
+        return new HistogramSnapshotImpl(result, sum.sum());
+    }
+
+    /**
+     * Returns the index of the bucket counting the given value.
+     * @param value The value, which must not be negative.
+     * @return The index of the bucket.
+     */
+    static int getBucket(long value) {
+        if (value < 2 * SUB_BUCKETS) {
+            return (int) value;
+        }
+        int shift = Long.SIZE - 1 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        return 2 * SUB_BUCKETS + (shift - 1) * SUB_BUCKETS + (int) (value >>> shift) - SUB_BUCKETS;
+    }
+
+    /**
+     * Returns the largest value counted by the given bucket.
+     * @param bucket The index of the bucket.
+     * @return The upper bound of the bucket.
+     */
+    static long getUpperBound(int bucket) {
+        if (bucket < 2 * SUB_BUCKETS) {
+            return bucket;
+        }
+        int shift = (bucket - 2 * SUB_BUCKETS) / SUB_BUCKETS + 1;
+        long subBucket = (bucket - 2 * SUB_BUCKETS) % SUB_BUCKETS + SUB_BUCKETS;
+        return ((subBucket + 1L) << shift) - 1L;
+    }
+}
@@ -0,0 +1,65 @@
+package atunstall.server.core.impl.metrics;
+
+import atunstall.server.core.api.metrics.HistogramSnapshot;
+
+class HistogramSnapshotImpl implements HistogramSnapshot {
+    private final long[] counts;
+    private final long count;
+    private final long sum;
+
+    HistogramSnapshotImpl(long[] counts, long sum) {
+        this.counts = counts;
+        this.sum = sum;
+        long total = 0L;
+        for (long bucket : counts) {
+            total += bucket;
+        }
+        count = total;
+    }
+
+    @Override
+    public long getCount() {
+        return count;
+    }
+
+    @Override
+    public long getSum() {
+        return sum;
+    }
+
+    @Override
+    public double getMean() {
+        return count == 0L ? 0D : (double) sum / count;
+    }
+
+    @Override
+    public long getPercentile(double percentile) {
+        if (count == 0L) {
+            return 0L;
+        }
+        long rank = Math.max((long) Math.ceil(Math.min(Math.max(percentile, 0D), 100D) / 100D * count), 1L);
+        long seen = 0L;
+        for (int bucket = 0; bucket < counts.length; bucket++) {
+            seen += counts[bucket];
+            if (seen >= rank) {
+                return HistogramImpl.getUpperBound(bucket);
+            }
+        }
+        return getMax();
+    }
+
+    @Override
+    public long getMax() {
+        for (int bucket = counts.length - 1; bucket >= 0; bucket--) {
+            if (counts[bucket] > 0L) {
+                return HistogramImpl.getUpperBound(bucket);
+            }
+        }
+        return 0L;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("count=%d mean=%.1f p50=%d p99=%d max=%d", count, getMean(), getPercentile(50D), getPercentile(99D), getMax());
+    }
+}
@@ -0,0 +1,125 @@
+package atunstall.server.core.impl.metrics;
+
+import atunstall.server.core.api.Module;
+import atunstall.server.core.api.Version;
+import atunstall.server.core.api.logging.Level;
+import atunstall.server.core.api.logging.Logger;
+import atunstall.server.core.api.metrics.Counter;
+import atunstall.server.core.api.metrics.Gauge;
+import atunstall.server.core.api.metrics.Histogram;
+import atunstall.server.core.api.metrics.HistogramSnapshot;
+import atunstall.server.core.api.metrics.Metrics;
+import atunstall.server.core.api.metrics.MetricsSnapshot;
+
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.LongSupplier;
+
+@Module
+public class MetricsImpl implements Metrics {
+    private static final String STRIPES_PROPERTY = "atunstall.server.core.metrics.stripes";
+    private static final String LOG_INTERVAL_PROPERTY = "atunstall.server.core.metrics.log";
+    private static final int MAX_DEFAULT_STRIPES = 4;
+
+    private final Logger logger;
+    private final int stripes;
+    private final Map<String, Counter> counters;
+    private final Map<String, LongSupplier> gauges;
+    private final Map<String, Histogram> histograms;
+    private final Map<Consumer<MetricsSnapshot>, ScheduledFuture<?>> exporters;
+    private ScheduledExecutorService executor;
+
+    public MetricsImpl(@Version(major = 1, minor = 2) Logger logger) {
+        this.logger = logger.getChild("Metrics");
+        int requested = Integer.getInteger(STRIPES_PROPERTY, Math.min(Runtime.getRuntime().availableProcessors(), MAX_DEFAULT_STRIPES));
+        stripes = Integer.highestOneBit(Math.max(requested, 1) * 2 - 1);
+        counters = new ConcurrentHashMap<>();
+        gauges = new ConcurrentHashMap<>();
+        histograms = new ConcurrentHashMap<>();
+        exporters = new ConcurrentHashMap<>();
+        long logInterval = Long.getLong(LOG_INTERVAL_PROPERTY, 0L);
+        if (logInterval > 0L) {
+            addExporter(this::log, logInterval, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @Override
+    public Counter getCounter(String name) {
+        return counters.computeIfAbsent(name, n -> new CounterImpl());
+    }
+
+    @Override
+    public Gauge getGauge(String name) {
+        LongSupplier gauge = gauges.computeIfAbsent(name, n -> new GaugeImpl());
+        if (!(gauge instanceof Gauge)) {
+            throw new IllegalStateException("gauge " + name + " is read from a supplier");
+        }
+        return (Gauge) gauge;
+    }
+
+    @Override
+    public void addGauge(String name, LongSupplier value) {
+        gauges.put(name, value);
+    }
+
+    @Override
+    public Histogram getHistogram(String name) {
+        return histograms.computeIfAbsent(name, n -> new HistogramImpl(stripes));
+    }
+
+    @Override
+    public MetricsSnapshot snapshot() {
+        SortedMap<String, Long> counterValues = new TreeMap<>();
+        counters.forEach((name, counter) -> counterValues.put(name, counter.get()));
+        SortedMap<String, Long> gaugeValues = new TreeMap<>();
+        gauges.forEach((name, gauge) -> gaugeValues.put(name, gauge.getAsLong()));
+        SortedMap<String, HistogramSnapshot> histogramValues = new TreeMap<>();
+        histograms.forEach((name, histogram) -> histogramValues.put(name, histogram.snapshot()));
+        return new MetricsSnapshotImpl(counterValues, gaugeValues, histogramValues);
+    }
+
+    @Override
+    public synchronized void addExporter(Consumer<MetricsSnapshot> exporter, long period, TimeUnit unit) {
+        if (executor == null) {
+            executor = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread thread = new Thread(r, "Metrics");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        ScheduledFuture<?> previous = exporters.put(exporter, executor.scheduleAtFixedRate(() -> export(exporter), period, period, unit));
+        if (previous != null) {
+            previous.cancel(false);
+        }
+    }
+
+    @Override
+    public synchronized void removeExporter(Consumer<MetricsSnapshot> exporter) {
+        ScheduledFuture<?> future = exporters.remove(exporter);
+        if (future != null) {
+            future.cancel(false);
+        }
+    }
+
+    private void export(Consumer<MetricsSnapshot> exporter) {
+        try {
+            exporter.accept(snapshot());
+        } catch (RuntimeException e) {
+            // A task that throws is never run again
+            logger.log(Level.WARNING, "Error while exporting metrics", e);
+        }
+    }
+
+    private void log(MetricsSnapshot snapshot) {
+        snapshot.getCounters().forEach((name, value) -> logger.log(Level.INFO, "Counter %s: %d", name, value));
+        snapshot.getGauges().forEach((name, value) -> logger.log(Level.INFO, "Gauge %s: %d", name, value));
+        snapshot.getHistograms().forEach((name, value) -> logger.log(Level.INFO, "Histogram %s: %s", name, value));
+    }
+}
@@ -0,0 +1,42 @@
+package atunstall.server.core.impl.metrics;
+
+import atunstall.server.core.api.metrics.HistogramSnapshot;
+import atunstall.server.core.api.metrics.MetricsSnapshot;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.SortedMap;
+
+class MetricsSnapshotImpl implements MetricsSnapshot {
+    private final long timestamp;
+    private final Map<String, Long> counters;
+    private final Map<String, Long> gauges;
+    private final Map<String, HistogramSnapshot> histograms;
+
+    MetricsSnapshotImpl(SortedMap<String, Long> counters, SortedMap<String, Long> gauges, SortedMap<String, HistogramSnapshot> histograms) {
+        timestamp = System.currentTimeMillis();
+        this.counters = Collections.unmodifiableMap(counters);
+        this.gauges = Collections.unmodifiableMap(gauges);
+        this.histograms = Collections.unmodifiableMap(histograms);
+    }
+
+    @Override
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    @Override
+    public Map<String, Long> getCounters() {
+        return counters;
+    }
+
+    @Override
+    public Map<String, Long> getGauges() {
+        return gauges;
+    }
+
+    @Override
+    public Map<String, HistogramSnapshot> getHistograms() {
+        return histograms;
+    }
+}
@@ -1,4 +1,7 @@
 module atunstall.server.core {
+    requires jdk.unsupported;
+
     exports atunstall.server.core.api;
     exports atunstall.server.core.api.logging;
+    exports atunstall.server.core.api.metrics;
 }
\ No newline at end of file